@@ -0,0 +1,125 @@
+package org.license;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Wires the services by hand against a throwaway CA keystore in a temporary directory
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    static final String PASSWORD = "changeit";
+    static final String CA_ALIAS = "lic.ca";
+
+    final Path directory;
+    final CaService caService;
+    final JwtSigningService jwtSigningService;
+    final JwtSchemaService jwtSchemaService;
+
+    private BenchmarkEnvironment(Path directory, CaService caService, JwtSigningService jwtSigningService, JwtSchemaService jwtSchemaService) {
+        this.directory = directory;
+        this.caService = caService;
+        this.jwtSigningService = jwtSigningService;
+        this.jwtSchemaService = jwtSchemaService;
+    }
+
+    static BenchmarkEnvironment create() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        Path directory = Files.createTempDirectory("license-bench");
+        Path caKeystore = directory.resolve("ca.jks");
+        writeCaKeyStore(caKeystore);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        CaService caService = new CaService(meterRegistry, new SerialNumberGenerator(128));
+        ReflectionTestUtils.setField(caService, "caKeystorePath", caKeystore.toString());
+        ReflectionTestUtils.setField(caService, "caKeystorePassword", PASSWORD);
+        ReflectionTestUtils.setField(caService, "caKeystoreAlias", CA_ALIAS);
+        caService.init();
+
+        // Pool left disabled so issuance benchmarks measure inline key generation
+        KeyPairPool keyPairPool = new KeyPairPool();
+        keyPairPool.init();
+
+        CertificateStore certificateStore = new JksCertificateStore(directory.resolve("generated.jks").toString(), PASSWORD);
+        JwtSigningService jwtSigningService = new JwtSigningService(caService, keyPairPool, certificateStore, meterRegistry);
+        ReflectionTestUtils.setField(jwtSigningService, "batchThreads", 2);
+        ReflectionTestUtils.setField(jwtSigningService, "idempotencyMaxEntries", 1000);
+        ReflectionTestUtils.setField(jwtSigningService, "idempotencyTtl", Duration.ofMinutes(10));
+        jwtSigningService.init();
+
+        JwtSchemaService jwtSchemaService = new JwtSchemaService(directory.resolve("schema").toString(), 256, meterRegistry);
+        jwtSchemaService.init();
+
+        return new BenchmarkEnvironment(directory, caService, jwtSigningService, jwtSchemaService);
+    }
+
+    static Map<String, Object> claims(int size) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", "license");
+        claims.put("name", "Jey company");
+        claims.put("expire", "2030/12/31");
+        List<String> apps = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            apps.add("app-" + i);
+        }
+        claims.put("apps", apps);
+        for (int i = 0; i < size; i++) {
+            claims.put("feature-" + i, Map.of("enabled", i % 2 == 0, "seats", i));
+        }
+        return claims;
+    }
+
+    private static void writeCaKeyStore(Path path) throws Exception {
+        KeyPair keyPair = KeyType.RSA_2048.generateKeyPair();
+        X500Name name = new X500Name("CN=Benchmark CA");
+        Date notBefore = new Date();
+        Date notAfter = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(3650));
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore, notAfter, name, keyPair.getPublic())
+                .addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        X509Certificate caCertificate = new JcaX509CertificateConverter().setProvider("BC")
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA256WithRSAEncryption").setProvider("BC").build(keyPair.getPrivate())));
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, PASSWORD.toCharArray());
+        keyStore.setKeyEntry(CA_ALIAS, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[]{caCertificate});
+        try (OutputStream out = Files.newOutputStream(path)) {
+            keyStore.store(out, PASSWORD.toCharArray());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jwtSigningService.shutdown();
+        jwtSchemaService.shutdown();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.license;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CertificateIssuanceBenchmark {
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public String subjectKeyType;
+
+    private BenchmarkEnvironment environment;
+    private PublicKey subjectKey;
+    private Date notBefore;
+    private Date notAfter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        subjectKey = KeyType.valueOf(subjectKeyType).generateKeyPair().getPublic();
+        notBefore = new Date();
+        notAfter = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public X509Certificate issueCertificate() throws Exception {
+        return environment.caService.issueCertificate("bench-subject", notBefore, notAfter, subjectKey);
+    }
+}
@@ -0,0 +1,63 @@
+package org.license;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Serialization cost alone: the same key and claims through jjwt and through the compact writer.
+// Run with the gc profiler (enabled in build.gradle) to compare gc.alloc.rate.norm per token.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompactJwsBenchmark {
+
+    private static final String COMMON_NAME = "bench-cert";
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public String keyType;
+
+    @Param({"4", "200"})
+    public int claimCount;
+
+    // 'license' adds iss/iat/nbf/exp/jti as a real license token carries them
+    @Param({"plain", "license"})
+    public String claimSet;
+
+    private BenchmarkEnvironment environment;
+    private SigningCertificate signingKey;
+    private CompactJwsWriter writer;
+    private Map<String, Object> claims;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        environment.jwtSigningService.generateAndSaveCertificate(COMMON_NAME, 30, KeyType.valueOf(keyType));
+        signingKey = environment.jwtSigningService.getSigningKey(COMMON_NAME);
+        writer = signingKey.getJwsWriter();
+        claims = BenchmarkEnvironment.claims(claimCount);
+        if ("license".equals(claimSet)) {
+            long now = System.currentTimeMillis() / 1000;
+            claims.put("iss", "license-server");
+            claims.put("iat", now);
+            claims.put("nbf", now);
+            claims.put("exp", now + 365L * 24 * 3600);
+            claims.put("jti", "bench-license");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public String jjwt() {
+        return CompactJwsWriter.jjwt(signingKey, claims);
+    }
+
+    @Benchmark
+    public String compactWriter() throws Exception {
+        return writer.sign(claims);
+    }
+}
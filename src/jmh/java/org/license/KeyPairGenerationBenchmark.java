@@ -0,0 +1,30 @@
+package org.license;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeyPairGenerationBenchmark {
+
+    @Param({"RSA_2048", "RSA_3072", "EC_P256", "EC_P384", "ED25519"})
+    public String keyType;
+
+    private KeyType type;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        type = KeyType.valueOf(keyType);
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return type.generateKeyPair();
+    }
+}
@@ -0,0 +1,51 @@
+package org.license;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SchemaValidationBenchmark {
+
+    private static final String SCHEMA_NAME = "bench-schema";
+    private static final String SCHEMA = "{\"type\":\"object\",\"properties\":{"
+            + "\"sub\":{\"type\":\"string\"},\"name\":{\"type\":\"string\"},"
+            + "\"apps\":{\"type\":\"array\",\"items\":{\"type\":\"string\"}},\"expire\":{\"type\":\"string\"}},"
+            + "\"required\":[\"sub\",\"name\",\"apps\",\"expire\"]}";
+
+    @Param({"warm", "cold"})
+    public String schemaCache;
+
+    @Param({"4", "200"})
+    public int claimCount;
+
+    private BenchmarkEnvironment environment;
+    private Map<String, Object> claims;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        environment.jwtSchemaService.saveSchema(SCHEMA_NAME, SCHEMA);
+        claims = BenchmarkEnvironment.claims(claimCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void evictSchema() {
+        if ("cold".equals(schemaCache)) {
+            environment.jwtSchemaService.invalidateAll();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public ValidationResponse verifyClaimsWithSchema() throws Exception {
+        return environment.jwtSchemaService.verifyClaimsWithSchema(SCHEMA_NAME, claims);
+    }
+}
@@ -0,0 +1,51 @@
+package org.license;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SigningBenchmark {
+
+    private static final String COMMON_NAME = "bench-cert";
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public String keyType;
+
+    @Param({"warm", "cold"})
+    public String keyCache;
+
+    @Param({"4", "200"})
+    public int claimCount;
+
+    private BenchmarkEnvironment environment;
+    private Map<String, Object> claims;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.create();
+        environment.jwtSigningService.generateAndSaveCertificate(COMMON_NAME, 30, KeyType.valueOf(keyType));
+        claims = BenchmarkEnvironment.claims(claimCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void evictKey() {
+        if ("cold".equals(keyCache)) {
+            // Rebuilds the snapshot, decoding the key from the keystore again
+            environment.jwtSigningService.reloadFromStore();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public String signJwt() throws Exception {
+        return environment.jwtSigningService.signJwt(COMMON_NAME, claims);
+    }
+}
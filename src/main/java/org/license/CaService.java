@@ -7,6 +7,8 @@ import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -38,9 +40,19 @@ public class CaService {
     @Value("${ca.keystore.alias}")
     private String caKeystoreAlias;
 
-    private KeyStore caKeyStore;
-    private X509Certificate caCertificate;
-    private PrivateKey caPrivateKey;
+    // Replaced as a whole by the watcher thread so readers never see a half-reloaded CA
+    private volatile CaState caState = CaState.NOT_LOADED;
+
+    private final MeterRegistry meterRegistry;
+    private final SerialNumberGenerator serialNumberGenerator;
+
+    public CaService(MeterRegistry meterRegistry, SerialNumberGenerator serialNumberGenerator) {
+        this.meterRegistry = meterRegistry;
+        this.serialNumberGenerator = serialNumberGenerator;
+        Gauge.builder("ca.loaded", this, service -> service.isCaLoaded() ? 1 : 0)
+                .description("1 when the CA certificate and private key are loaded")
+                .register(meterRegistry);
+    }
 
     @PostConstruct
     public void init() {
@@ -50,24 +62,25 @@ public class CaService {
 
     private void loadCaKeyStore() {
         try (FileInputStream fis = new FileInputStream(caKeystorePath)) {
-            caKeyStore = KeyStore.getInstance("JKS");
+            KeyStore caKeyStore = KeyStore.getInstance("JKS");
             caKeyStore.load(fis, caKeystorePassword.toCharArray());
 
-            caCertificate = (X509Certificate) caKeyStore.getCertificate(caKeystoreAlias);
-            caPrivateKey = (PrivateKey) caKeyStore.getKey(caKeystoreAlias, caKeystorePassword.toCharArray());
+            X509Certificate caCertificate = (X509Certificate) caKeyStore.getCertificate(caKeystoreAlias);
+            PrivateKey caPrivateKey = (PrivateKey) caKeyStore.getKey(caKeystoreAlias, caKeystorePassword.toCharArray());
 
             if (caCertificate == null || caPrivateKey == null) {
                 throw new KeyStoreException("CA certificate or private key not found in keystore.");
             }
+            // Fails the load now instead of every issuance when the CA key is of an unsupported size
+            KeyType.fromKey(caPrivateKey);
+            caState = new CaState(caCertificate, caPrivateKey);
             log.info("CA KeyStore loaded successfully from: {}", caKeystorePath);
             log.info("CA Certificate Subject: {}", caCertificate.getSubjectX500Principal().getName());
             log.info("CA Certificate Not After: {}", caCertificate.getNotAfter());
 
         } catch (Exception e) {
             log.error("Failed to load CA KeyStore from {}: {}", caKeystorePath, e.getMessage());
-            caKeyStore = null;
-            caCertificate = null;
-            caPrivateKey = null;
+            caState = CaState.NOT_LOADED;
         }
     }
 
@@ -80,7 +93,7 @@ public class CaService {
             WatchService watchService = FileSystems.getDefault().newWatchService();
             path.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
 
-            new Thread(() -> {
+            Thread watcher = new Thread(() -> {
                 try {
                     WatchKey key;
                     while ((key = watchService.take()) != null) {
@@ -111,7 +124,9 @@ public class CaService {
                 } catch (InterruptedException | ClosedWatchServiceException e) {
                     log.info("CA KeyStore file watcher stopped.");
                 }
-            }).start();
+            }, "ca-keystore-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
             log.info("Watching CA KeyStore file for changes: {}", caKeystorePath);
         } catch (IOException e) {
             log.error("Failed to set up CA KeyStore file watcher: {}", e.getMessage());
@@ -119,25 +134,39 @@ public class CaService {
     }
 
     public X509Certificate getCaCertificate() {
-        return caCertificate;
+        return caState.certificate;
+    }
+
+    // Encoded with the state it belongs to, so a reload replaces it together with the certificate
+    public EncodedCertificate getEncodedCaCertificate() {
+        return caState.encoded;
     }
 
     public PrivateKey getCaPrivateKey() {
-        return caPrivateKey;
+        return caState.privateKey;
     }
 
     public boolean isCaLoaded() {
-        return caCertificate != null && caPrivateKey != null;
+        CaState state = caState;
+        return state.certificate != null && state.privateKey != null;
     }
 
     public X509Certificate issueCertificate(String commonName, Date notBefore, Date notAfter, PublicKey publicKey) throws Exception {
-        if (!isCaLoaded()) {
+        return ServiceMetrics.time(meterRegistry, ServiceMetrics.CA_ISSUE, () -> issue(commonName, notBefore, notAfter, publicKey));
+    }
+
+    private X509Certificate issue(String commonName, Date notBefore, Date notAfter, PublicKey publicKey) throws Exception {
+        // Read once so the issuer name and signing key always come from the same CA
+        CaState state = caState;
+        X509Certificate caCertificate = state.certificate;
+        PrivateKey caPrivateKey = state.privateKey;
+        if (caCertificate == null || caPrivateKey == null) {
             throw new IllegalStateException("CA is not loaded. Cannot issue certificates.");
         }
 
         X500Name issuer = new X500Name(caCertificate.getSubjectX500Principal().getName());
         X500Name subject = new X500Name("CN=" + commonName);
-        BigInteger serial = BigInteger.valueOf(System.currentTimeMillis());
+        BigInteger serial = serialNumberGenerator.next();
 
         SubjectPublicKeyInfo publicKeyInfo = SubjectPublicKeyInfo.getInstance(publicKey.getEncoded());
 
@@ -150,11 +179,27 @@ public class CaService {
                 publicKeyInfo
         );
 
-        ContentSigner signer = new JcaContentSignerBuilder("SHA256WithRSAEncryption")
+        // Signature algorithm follows the CA key type (RSA, EC or Ed25519)
+        String signatureAlgorithm = KeyType.fromKey(caPrivateKey).getCertificateSignatureAlgorithm();
+        ContentSigner signer = new JcaContentSignerBuilder(signatureAlgorithm)
                 .setProvider("BC")
                 .build(caPrivateKey);
 
         X509CertificateHolder certHolder = certBuilder.build(signer);
         return new JcaX509CertificateConverter().setProvider("BC").getCertificate(certHolder);
     }
+
+    private static final class CaState {
+        private static final CaState NOT_LOADED = new CaState(null, null);
+
+        private final X509Certificate certificate;
+        private final PrivateKey privateKey;
+        private final EncodedCertificate encoded;
+
+        private CaState(X509Certificate certificate, PrivateKey privateKey) {
+            this.certificate = certificate;
+            this.privateKey = privateKey;
+            this.encoded = certificate == null ? null : EncodedCertificate.of(new X509Certificate[]{certificate});
+        }
+    }
 }
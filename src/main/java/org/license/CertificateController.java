@@ -1,46 +1,76 @@
 package org.license;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.http.MediaType;
 
 import java.util.List;
-import java.security.cert.X509Certificate;
-import java.io.StringWriter;
-import org.bouncycastle.util.io.pem.PemWriter;
-import org.bouncycastle.util.io.pem.PemObject;
 
 @RestController
 @RequestMapping("/certificates")
 public class CertificateController {
 
+    private static final MediaType PKIX_CERT = MediaType.parseMediaType("application/pkix-cert");
+
     private final JwtSigningService jwtSigningService;
     private final CaService caService;
+    private final KeyPairPool keyPairPool;
+
+    @Value("${generated.bulk.max-size:1000}")
+    private int maxBulkSize;
 
-    public CertificateController(JwtSigningService jwtSigningService, CaService caService) {
+    public CertificateController(JwtSigningService jwtSigningService, CaService caService, KeyPairPool keyPairPool) {
         this.jwtSigningService = jwtSigningService;
         this.caService = caService;
+        this.keyPairPool = keyPairPool;
     }
 
     @PostMapping("/generate")
-    public ResponseEntity<?> generateCertificate(@RequestParam String commonName, @RequestParam(defaultValue = "365") long validityDays) {
+    public ResponseEntity<?> generateCertificate(@RequestParam String commonName, @RequestParam(defaultValue = "365") long validityDays,
+                                                 @RequestParam(defaultValue = "RSA-2048") String keyType) {
         try {
-            JwtSigningService.CertificateInfo certInfo = jwtSigningService.generateAndSaveCertificate(commonName, validityDays);
+            JwtSigningService.CertificateInfo certInfo = jwtSigningService.generateAndSaveCertificate(commonName, validityDays, KeyType.fromString(keyType));
             return ResponseEntity.ok(certInfo);
-        } catch (IllegalStateException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error generating certificate: " + e.getMessage());
         }
     }
 
+    // One report entry per request item, in input order; the issued certificates are persisted in one store write
+    @PostMapping("/generate/bulk")
+    public ResponseEntity<?> generateCertificates(@RequestBody List<CertificateIssueRequest> requests) {
+        if (requests.size() > maxBulkSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Batch size " + requests.size() + " exceeds the maximum of " + maxBulkSize + ".");
+        }
+        try {
+            return ResponseEntity.ok(jwtSigningService.generateAndSaveCertificates(requests));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Bulk issuance interrupted.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error generating certificates: " + e.getMessage());
+        }
+    }
+
     @GetMapping
     public ResponseEntity<List<JwtSigningService.CertificateInfo>> getCertificates() {
         List<JwtSigningService.CertificateInfo> certs = jwtSigningService.getGeneratedCertificates();
         return ResponseEntity.ok(certs);
     }
 
+    @GetMapping("/key-pool/stats")
+    public ResponseEntity<List<KeyPairPool.PoolStats>> getKeyPoolStats() {
+        return ResponseEntity.ok(keyPairPool.getStats());
+    }
+
     @DeleteMapping("/{commonName}")
     public ResponseEntity<?> deleteCertificate(@PathVariable String commonName) {
         try {
@@ -56,32 +86,42 @@ public class CertificateController {
     }
 
     @GetMapping("/ca-certificate/pem")
-    public ResponseEntity<?> getCaCertificatePem() {
+    public ResponseEntity<?> getCaCertificatePem(WebRequest webRequest) {
+        EncodedCertificate caCert = caService.getEncodedCaCertificate();
+        if (caCert == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("CA certificate not loaded.");
+        }
+        return serve(webRequest, caCert.getPem(), caCert.getPemEtag(), MediaType.TEXT_PLAIN);
+    }
+
+    @GetMapping("/ca-certificate/der")
+    public ResponseEntity<?> getCaCertificateDer(WebRequest webRequest) {
+        EncodedCertificate caCert = caService.getEncodedCaCertificate();
+        if (caCert == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("CA certificate not loaded.");
+        }
+        return serve(webRequest, caCert.getDer(), caCert.getDerEtag(), PKIX_CERT);
+    }
+
+    @GetMapping("/{commonName}/pem")
+    public ResponseEntity<?> getCertificatePem(@PathVariable String commonName, WebRequest webRequest) {
         try {
-            X509Certificate caCert = caService.getCaCertificate();
-            if (caCert == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("CA certificate not loaded.");
-            }
-
-            StringWriter sw = new StringWriter();
-            try (PemWriter pw = new PemWriter(sw)) {
-                pw.writeObject(new PemObject("CERTIFICATE", caCert.getEncoded()));
-            }
-            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(sw.toString());
+            EncodedCertificate cert = jwtSigningService.getEncodedCertificate(commonName);
+            return serve(webRequest, cert.getPem(), cert.getPemEtag(), MediaType.TEXT_PLAIN);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error retrieving CA certificate: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error retrieving certificate: " + e.getMessage());
         }
     }
 
-    @GetMapping("/{commonName}/pem")
-    public ResponseEntity<?> getCertificatePem(@PathVariable String commonName) {
+    @GetMapping("/{commonName}/der")
+    public ResponseEntity<?> getCertificateDer(@PathVariable String commonName, WebRequest webRequest) {
         try {
-            X509Certificate cert = jwtSigningService.getCertificateByCommonName(commonName);
-            StringWriter sw = new StringWriter();
-            try (PemWriter pw = new PemWriter(sw)) {
-                pw.writeObject(new PemObject("CERTIFICATE", cert.getEncoded()));
-            }
-            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(sw.toString());
+            EncodedCertificate cert = jwtSigningService.getEncodedCertificate(commonName);
+            return serve(webRequest, cert.getDer(), cert.getDerEtag(), PKIX_CERT);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (IllegalStateException e) {
@@ -90,4 +130,27 @@ public class CertificateController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error retrieving certificate: " + e.getMessage());
         }
     }
+
+    // Leaf certificate followed by the issuing CA, as concatenated PEM blocks
+    @GetMapping("/{commonName}/bundle")
+    public ResponseEntity<?> getCertificateBundle(@PathVariable String commonName, WebRequest webRequest) {
+        try {
+            EncodedCertificate cert = jwtSigningService.getEncodedCertificate(commonName);
+            return serve(webRequest, cert.getChainPem(), cert.getChainPemEtag(), MediaType.TEXT_PLAIN);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error retrieving certificate bundle: " + e.getMessage());
+        }
+    }
+
+    // Bodies are prebuilt; a matching If-None-Match is answered with a bodiless 304
+    private static ResponseEntity<byte[]> serve(WebRequest webRequest, byte[] body, String etag, MediaType mediaType) {
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).contentType(mediaType).body(body);
+    }
 }
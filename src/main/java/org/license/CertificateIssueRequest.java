@@ -0,0 +1,31 @@
+package org.license;
+
+public class CertificateIssueRequest {
+    private String commonName;
+    private long validityDays = 365;
+    private String keyType = KeyType.RSA_2048.getLabel();
+
+    public String getCommonName() {
+        return commonName;
+    }
+
+    public void setCommonName(String commonName) {
+        this.commonName = commonName;
+    }
+
+    public long getValidityDays() {
+        return validityDays;
+    }
+
+    public void setValidityDays(long validityDays) {
+        this.validityDays = validityDays;
+    }
+
+    public String getKeyType() {
+        return keyType;
+    }
+
+    public void setKeyType(String keyType) {
+        this.keyType = keyType;
+    }
+}
@@ -0,0 +1,81 @@
+package org.license;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Immutable alias -> certificate map; writers publish a new instance instead of mutating this one
+public final class CertificateSnapshot {
+
+    static final CertificateSnapshot EMPTY = new CertificateSnapshot(Collections.emptyMap(), 0);
+
+    private final Map<String, SigningCertificate> entries;
+    private final Map<String, SigningCertificate> entriesByKeyId;
+    private final long version;
+
+    private CertificateSnapshot(Map<String, SigningCertificate> entries, long version) {
+        this.entries = entries;
+        this.version = version;
+        Map<String, SigningCertificate> byKeyId = new HashMap<>();
+        for (SigningCertificate certificate : entries.values()) {
+            byKeyId.put(certificate.getKeyId(), certificate);
+        }
+        this.entriesByKeyId = Collections.unmodifiableMap(byKeyId);
+    }
+
+    static CertificateSnapshot of(Collection<SigningCertificate> certificates, long version) {
+        Map<String, SigningCertificate> entries = new HashMap<>();
+        for (SigningCertificate certificate : certificates) {
+            entries.put(normalize(certificate.getAlias()), certificate);
+        }
+        return new CertificateSnapshot(Collections.unmodifiableMap(entries), version);
+    }
+
+    public SigningCertificate get(String alias) {
+        return alias == null ? null : entries.get(normalize(alias));
+    }
+
+    public SigningCertificate getByKeyId(String keyId) {
+        return keyId == null ? null : entriesByKeyId.get(keyId);
+    }
+
+    public Collection<SigningCertificate> all() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Increases on every published change; caches derived from the certificate set key on it
+    public long getVersion() {
+        return version;
+    }
+
+    CertificateSnapshot with(SigningCertificate certificate) {
+        Map<String, SigningCertificate> copy = new HashMap<>(entries);
+        copy.put(normalize(certificate.getAlias()), certificate);
+        return new CertificateSnapshot(Collections.unmodifiableMap(copy), version + 1);
+    }
+
+    CertificateSnapshot withAll(Collection<SigningCertificate> certificates) {
+        Map<String, SigningCertificate> copy = new HashMap<>(entries);
+        for (SigningCertificate certificate : certificates) {
+            copy.put(normalize(certificate.getAlias()), certificate);
+        }
+        return new CertificateSnapshot(Collections.unmodifiableMap(copy), version + 1);
+    }
+
+    CertificateSnapshot without(String alias) {
+        Map<String, SigningCertificate> copy = new HashMap<>(entries);
+        copy.remove(normalize(alias));
+        return new CertificateSnapshot(Collections.unmodifiableMap(copy), version + 1);
+    }
+
+    // Aliases are case-insensitive, as in JKS
+    static String normalize(String alias) {
+        return alias.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,42 @@
+package org.license;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.List;
+
+// Persistent home of the generated certificates and their private keys
+public interface CertificateStore {
+
+    void load() throws IOException, GeneralSecurityException;
+
+    String getLocation();
+
+    List<String> aliases();
+
+    boolean containsAlias(String alias);
+
+    PrivateKey getKey(String alias) throws IOException, GeneralSecurityException;
+
+    Certificate[] getCertificateChain(String alias);
+
+    void put(String alias, PrivateKey privateKey, Certificate[] chain) throws IOException, GeneralSecurityException;
+
+    // Stores several entries; implementations that rewrite a single file persist them in one write
+    default void putAll(List<SigningCertificate> entries) throws IOException, GeneralSecurityException {
+        for (SigningCertificate entry : entries) {
+            put(entry.getAlias(), entry.getPrivateKey(), entry.getChain());
+        }
+    }
+
+    void delete(String alias) throws IOException, GeneralSecurityException;
+
+    static CertificateStore open(String type, String location, String password) {
+        return switch (type.toLowerCase()) {
+            case "jks" -> new JksCertificateStore(location, password);
+            case "file" -> new FileCertificateStore(location, password);
+            default -> throw new IllegalArgumentException("Unknown certificate store type: " + type + " (expected jks or file)");
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package org.license;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CertificateStoreConfig {
+
+    @Bean
+    public CertificateStore certificateStore(@Value("${generated.keystore.type:jks}") String type,
+                                             @Value("${generated.keystore.path}") String keystorePath,
+                                             @Value("${generated.keystore.directory:./certs/generated}") String directory,
+                                             @Value("${generated.keystore.password}") String password) {
+        return CertificateStore.open(type, "file".equalsIgnoreCase(type) ? directory : keystorePath, password);
+    }
+}
@@ -0,0 +1,47 @@
+package org.license;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.cert.Certificate;
+
+// Copies every entry from one certificate store backend to another, e.g. generated.jks to a per-entry directory
+public class CertificateStoreMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CertificateStoreMigration.class);
+
+    public static int migrate(CertificateStore source, CertificateStore target) throws Exception {
+        int migrated = 0;
+        for (String alias : source.aliases()) {
+            PrivateKey privateKey = source.getKey(alias);
+            Certificate[] chain = source.getCertificateChain(alias);
+            if (privateKey == null || chain == null) {
+                log.warn("Skipping entry {}: no private key or certificate chain.", alias);
+                continue;
+            }
+            target.put(alias, privateKey, chain);
+            migrated++;
+        }
+        log.info("Migrated {} entries from {} to {}", migrated, source.getLocation(), target.getLocation());
+        return migrated;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.err.println("Usage: CertificateStoreMigration <source-type> <source-location> <target-type> <target-location> <password>");
+            System.err.println("  e.g. CertificateStoreMigration jks ./certs/generated.jks file ./certs/generated changeit");
+            System.exit(1);
+        }
+        Security.addProvider(new BouncyCastleProvider());
+
+        CertificateStore source = CertificateStore.open(args[0], args[1], args[4]);
+        CertificateStore target = CertificateStore.open(args[2], args[3], args[4]);
+        source.load();
+        target.load();
+        int migrated = migrate(source, target);
+        System.out.println("Migrated " + migrated + " entries.");
+    }
+}
@@ -0,0 +1,154 @@
+package org.license;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.jsonwebtoken.Jwts;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Compact JWS serializer for one signing key. The header segment is taken once from a jjwt-built token, claims go
+// straight to UTF-8 bytes and both segments are base64url-encoded into the final token array, so a signature costs
+// one JSON buffer, one token array and the signature itself. Output is byte-for-byte what Jwts.builder() produces.
+// Integral exp/nbf/iat seconds take the fast path, since jjwt writes them back unchanged; claims jjwt would rewrite
+// (aud, time claims given as dates or strings, empty or padded values) are handed to jjwt instead.
+public final class CompactJwsWriter {
+
+    private static final ObjectWriter CLAIMS_WRITER = new ObjectMapper().writer();
+    private static final byte[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    // jjwt reads these as epoch seconds and writes them back as longs
+    private static final Set<String> TIME_CLAIMS = Set.of("exp", "nbf", "iat");
+    // Largest seconds value jjwt can turn into Date milliseconds without overflow
+    private static final long MAX_EPOCH_SECONDS = Long.MAX_VALUE / 1000;
+    private static final Set<String> STRING_CLAIMS = Set.of("iss", "sub", "jti");
+
+    private final SigningCertificate signingKey;
+    private final String algorithm;
+    // Base64url header followed by '.'
+    private final byte[] header;
+    private final int signatureLength;
+    // Initialized signers ready for reuse; bounded so a burst of callers does not keep its signers forever
+    private final ArrayBlockingQueue<Signature> signers;
+
+    private CompactJwsWriter(SigningCertificate signingKey, String algorithm, byte[] header, int signatureLength) {
+        this.signingKey = signingKey;
+        this.algorithm = algorithm;
+        this.header = header;
+        this.signatureLength = signatureLength;
+        this.signers = new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    static CompactJwsWriter of(SigningCertificate signingKey) {
+        // jjwt decides the header layout; a probe token pins it together with the key's signature length
+        String probe = jjwt(signingKey, Map.of("sub", "header-probe"));
+        int headerEnd = probe.indexOf('.') + 1;
+        int signatureStart = probe.lastIndexOf('.') + 1;
+        byte[] header = probe.substring(0, headerEnd).getBytes(StandardCharsets.US_ASCII);
+        int signatureLength = Base64.getUrlDecoder().decode(probe.substring(signatureStart)).length;
+        return new CompactJwsWriter(signingKey, signingKey.getKeyType().getJwsSignatureAlgorithm(), header, signatureLength);
+    }
+
+    static String jjwt(SigningCertificate signingKey, Map<String, Object> claims) {
+        return Jwts.builder()
+                .header().keyId(signingKey.getKeyId()).and()
+                .claims(claims)
+                .signWith(signingKey.getPrivateKey(), signingKey.getKeyType().getJwsAlgorithm())
+                .compact();
+    }
+
+    public String sign(Map<String, Object> claims) throws JsonProcessingException, GeneralSecurityException {
+        if (!isPlain(claims)) {
+            return jjwt(signingKey, claims);
+        }
+        byte[] payload = CLAIMS_WRITER.writeValueAsBytes(claims);
+        int signingInputLength = header.length + encodedLength(payload.length);
+        byte[] token = new byte[signingInputLength + 1 + encodedLength(signatureLength)];
+        System.arraycopy(header, 0, token, 0, header.length);
+        encode(payload, token, header.length);
+
+        byte[] signature = sign(token, signingInputLength);
+        if (signature.length != signatureLength) {
+            throw new IllegalStateException("Unexpected " + algorithm + " signature length " + signature.length);
+        }
+        token[signingInputLength] = '.';
+        encode(signature, token, signingInputLength + 1);
+        // Every byte is base64url or '.', so the Latin-1 decode is a straight copy into a compact string
+        return new String(token, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] sign(byte[] input, int length) throws GeneralSecurityException {
+        Signature signer = signers.poll();
+        if (signer == null) {
+            signer = Signature.getInstance(algorithm);
+            signer.initSign(signingKey.getPrivateKey());
+        }
+        signer.update(input, 0, length);
+        byte[] signature = signer.sign();
+        // sign() resets the signer to its initialized state; one that threw is simply dropped
+        signers.offer(signer);
+        return signature;
+    }
+
+    // True when jjwt would serialize the map exactly as Jackson does
+    static boolean isPlain(Map<String, Object> claims) {
+        if (claims == null || claims.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> claim : claims.entrySet()) {
+            String name = claim.getKey();
+            Object value = claim.getValue();
+            if (name == null || name.isEmpty() || !name.strip().equals(name) || "aud".equals(name)) {
+                return false;
+            }
+            if (TIME_CLAIMS.contains(name)) {
+                if (!(value instanceof Integer || value instanceof Long)
+                        || ((Number) value).longValue() > MAX_EPOCH_SECONDS || ((Number) value).longValue() < -MAX_EPOCH_SECONDS) {
+                    return false;
+                }
+            } else if (value instanceof String text) {
+                if (text.isBlank() || !text.strip().equals(text)) {
+                    return false;
+                }
+            } else if (value == null || STRING_CLAIMS.contains(name) || value.getClass().isArray()
+                    || value instanceof Collection<?> c && c.isEmpty()
+                    || value instanceof Map<?, ?> m && m.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int encodedLength(int length) {
+        return length / 3 * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+    // Unpadded base64url of source into target at offset
+    static void encode(byte[] source, byte[] target, int offset) {
+        int full = source.length / 3 * 3;
+        int out = offset;
+        for (int i = 0; i < full; i += 3) {
+            int bits = (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8 | source[i + 2] & 0xFF;
+            target[out++] = BASE64URL[bits >>> 18];
+            target[out++] = BASE64URL[bits >>> 12 & 0x3F];
+            target[out++] = BASE64URL[bits >>> 6 & 0x3F];
+            target[out++] = BASE64URL[bits & 0x3F];
+        }
+        int remaining = source.length - full;
+        if (remaining > 0) {
+            int bits = (source[full] & 0xFF) << 16 | (remaining == 2 ? (source[full + 1] & 0xFF) << 8 : 0);
+            target[out++] = BASE64URL[bits >>> 18];
+            target[out++] = BASE64URL[bits >>> 12 & 0x3F];
+            if (remaining == 2) {
+                target[out] = BASE64URL[bits >>> 6 & 0x3F];
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.license;
+
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.HexFormat;
+
+// PEM, DER and PEM-chain bodies of one certificate, encoded once and served as-is; callers must not modify the arrays
+public final class EncodedCertificate {
+
+    private final byte[] der;
+    private final byte[] pem;
+    private final byte[] chainPem;
+    private final String derEtag;
+    private final String pemEtag;
+    private final String chainPemEtag;
+
+    private EncodedCertificate(byte[] der, byte[] pem, byte[] chainPem) {
+        this.der = der;
+        this.pem = pem;
+        this.chainPem = chainPem;
+        this.derEtag = etag(der);
+        this.pemEtag = etag(pem);
+        this.chainPemEtag = etag(chainPem);
+    }
+
+    // chain[0] is the certificate itself; the remaining entries only go into the chain bundle
+    static EncodedCertificate of(X509Certificate[] chain) {
+        try {
+            byte[] der = chain[0].getEncoded();
+            StringWriter leaf = new StringWriter();
+            try (PemWriter pw = new PemWriter(leaf)) {
+                pw.writeObject(new PemObject("CERTIFICATE", der));
+            }
+            StringWriter bundle = new StringWriter();
+            try (PemWriter pw = new PemWriter(bundle)) {
+                for (X509Certificate certificate : chain) {
+                    pw.writeObject(new PemObject("CERTIFICATE", certificate.getEncoded()));
+                }
+            }
+            return new EncodedCertificate(der,
+                    leaf.toString().getBytes(StandardCharsets.US_ASCII),
+                    bundle.toString().getBytes(StandardCharsets.US_ASCII));
+        } catch (CertificateEncodingException | IOException e) {
+            throw new IllegalArgumentException("Cannot encode certificate " + chain[0].getSubjectX500Principal().getName(), e);
+        }
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public byte[] getDer() {
+        return der;
+    }
+
+    public byte[] getPem() {
+        return pem;
+    }
+
+    public byte[] getChainPem() {
+        return chainPem;
+    }
+
+    public String getDerEtag() {
+        return derEtag;
+    }
+
+    public String getPemEtag() {
+        return pemEtag;
+    }
+
+    public String getChainPemEtag() {
+        return chainPemEtag;
+    }
+}
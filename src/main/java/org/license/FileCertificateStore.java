@@ -0,0 +1,155 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One password-protected PKCS12 file per alias, so adding or removing an entry touches a single file
+public class FileCertificateStore implements CertificateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FileCertificateStore.class);
+    private static final String EXTENSION = ".p12";
+
+    private final Path directory;
+    private final char[] password;
+    private final Map<String, Certificate[]> chains = new ConcurrentHashMap<>();
+
+    public FileCertificateStore(String directory, String password) {
+        this.directory = Paths.get(directory);
+        this.password = password.toCharArray();
+    }
+
+    @Override
+    public void load() throws IOException, GeneralSecurityException {
+        Files.createDirectories(directory);
+        chains.clear();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String alias = decodeAlias(file.getFileName().toString());
+                chains.put(alias, readEntry(file).getCertificateChain());
+            }
+        }
+        log.info("Generated certificates loaded from {} ({} entries)", directory, chains.size());
+    }
+
+    @Override
+    public String getLocation() {
+        return directory.toString();
+    }
+
+    @Override
+    public List<String> aliases() {
+        return new ArrayList<>(chains.keySet());
+    }
+
+    @Override
+    public boolean containsAlias(String alias) {
+        return chains.containsKey(normalize(alias));
+    }
+
+    @Override
+    public PrivateKey getKey(String alias) throws IOException, GeneralSecurityException {
+        Path file = entryPath(normalize(alias));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return readEntry(file).getPrivateKey();
+    }
+
+    @Override
+    public Certificate[] getCertificateChain(String alias) {
+        return chains.get(normalize(alias));
+    }
+
+    @Override
+    public void put(String alias, PrivateKey privateKey, Certificate[] chain) throws IOException, GeneralSecurityException {
+        String normalized = normalize(alias);
+        KeyStore entry = KeyStore.getInstance("PKCS12");
+        entry.load(null, password);
+        entry.setKeyEntry(normalized, privateKey, password, chain);
+
+        Path target = entryPath(normalized);
+        Path tmp = Files.createTempFile(directory, ".entry", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                entry.store(out, password);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        chains.put(normalized, chain);
+    }
+
+    @Override
+    public void delete(String alias) throws IOException {
+        String normalized = normalize(alias);
+        Files.deleteIfExists(entryPath(normalized));
+        chains.remove(normalized);
+    }
+
+    private KeyStore.PrivateKeyEntry readEntry(Path file) throws IOException, GeneralSecurityException {
+        KeyStore entry = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(file)) {
+            entry.load(in, password);
+        }
+        String alias = entry.aliases().nextElement();
+        return (KeyStore.PrivateKeyEntry) entry.getEntry(alias, new KeyStore.PasswordProtection(password));
+    }
+
+    private Path entryPath(String alias) {
+        return directory.resolve(encodeAlias(alias) + EXTENSION);
+    }
+
+    // JKS aliases are case-insensitive; keep the same semantics so both backends agree
+    private static String normalize(String alias) {
+        return alias.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String encodeAlias(String alias) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : alias.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.') {
+                sb.append(c);
+            } else {
+                sb.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String decodeAlias(String fileName) {
+        String encoded = fileName.substring(0, fileName.length() - EXTENSION.length());
+        byte[] out = new byte[encoded.length()];
+        int length = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '%' && i + 2 < encoded.length()) {
+                out[length++] = (byte) Integer.parseInt(encoded.substring(i + 1, i + 3), 16);
+                i += 2;
+            } else {
+                out[length++] = (byte) c;
+            }
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+}
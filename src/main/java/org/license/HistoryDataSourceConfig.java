@@ -0,0 +1,112 @@
+package org.license;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// History database: one WAL-mode writer connection plus a read-only pool. Read-only transactions
+// (Spring Data finders, @Transactional(readOnly = true)) are routed to the readers; everything else writes.
+@Configuration
+public class HistoryDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource historyWriterDataSource(@Value("${spring.datasource.url}") String url,
+                                                    @Value("${jwt.history.db.synchronous:NORMAL}") String synchronous,
+                                                    @Value("${jwt.history.db.busy-timeout-ms:5000}") int busyTimeoutMs) {
+        return writerPool(url, SQLiteConfig.SynchronousMode.valueOf(synchronous.toUpperCase()), busyTimeoutMs);
+    }
+
+    // Depends on the writer only so that the writer opens the database first
+    @Bean(destroyMethod = "close")
+    public HikariDataSource historyReaderDataSource(@Qualifier("historyWriterDataSource") HikariDataSource writer,
+                                                    @Value("${spring.datasource.url}") String url,
+                                                    @Value("${jwt.history.db.busy-timeout-ms:5000}") int busyTimeoutMs,
+                                                    @Value("${jwt.history.db.reader-pool-size:4}") int readerPoolSize) {
+        return readerPool(url, busyTimeoutMs, readerPoolSize);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("historyWriterDataSource") HikariDataSource writer,
+                                 @Qualifier("historyReaderDataSource") HikariDataSource reader) {
+        return routing(writer, reader);
+    }
+
+    // The connection is fetched on first use, after the transaction has marked it read-only or not
+    static LazyConnectionDataSourceProxy routing(DataSource writer, DataSource reader) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(writer);
+        routing.setReadOnlyDataSource(reader);
+        return routing;
+    }
+
+    // A single connection queues writers in the pool instead of in SQLite's lock, so inserts never see SQLITE_BUSY
+    static HikariDataSource writerPool(String url, SQLiteConfig.SynchronousMode synchronous, int busyTimeoutMs) {
+        createParentDirectory(url);
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(synchronous);
+        config.setBusyTimeout(busyTimeoutMs);
+        HikariDataSource writer = pool("history-writer", url, config, 1, false);
+
+        // Opened eagerly so the file exists and is in WAL mode before any read-only connection opens it
+        try (Connection ignored = writer.getConnection()) {
+            return writer;
+        } catch (SQLException e) {
+            writer.close();
+            throw new IllegalStateException("Cannot open history database " + url, e);
+        }
+    }
+
+    static HikariDataSource readerPool(String url, int busyTimeoutMs, int size) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        config.setBusyTimeout(busyTimeoutMs);
+        return pool("history-reader", url, config, size, true);
+    }
+
+    private static HikariDataSource pool(String name, String url, SQLiteConfig sqliteConfig, int size, boolean readOnly) {
+        SQLiteDataSource sqlite = new SQLiteDataSource(sqliteConfig);
+        sqlite.setUrl(url);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setDataSource(sqlite);
+        config.setMaximumPoolSize(size);
+        config.setMinimumIdle(1);
+        config.setReadOnly(readOnly);
+        return new HikariDataSource(config);
+    }
+
+    private static void createParentDirectory(String url) {
+        String path = url.substring(url.indexOf("sqlite:") + "sqlite:".length());
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (path.isEmpty() || path.startsWith(":memory:") || path.startsWith("file:")) {
+            return;
+        }
+        Path parent = Paths.get(path).toAbsolutePath().getParent();
+        try {
+            Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Single JKS file holding every entry; each change rewrites the whole file
+public class JksCertificateStore implements CertificateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JksCertificateStore.class);
+
+    private final Path keystorePath;
+    private final char[] password;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private KeyStore keyStore;
+
+    public JksCertificateStore(String keystorePath, String password) {
+        this.keystorePath = Paths.get(keystorePath);
+        this.password = password.toCharArray();
+    }
+
+    @Override
+    public void load() throws IOException, GeneralSecurityException {
+        KeyStore loaded = KeyStore.getInstance("JKS");
+        if (Files.exists(keystorePath)) {
+            try (InputStream in = Files.newInputStream(keystorePath)) {
+                loaded.load(in, password);
+            }
+            log.info("Generated certificates KeyStore loaded successfully from: {}", keystorePath);
+        } else {
+            loaded.load(null, password); // Create new empty keystore
+            log.info("New generated certificates KeyStore created at: {}", keystorePath);
+        }
+        keyStore = loaded;
+    }
+
+    @Override
+    public String getLocation() {
+        return keystorePath.toString();
+    }
+
+    @Override
+    public List<String> aliases() {
+        List<String> aliases = new ArrayList<>();
+        try {
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (keyStore.isKeyEntry(alias)) {
+                    aliases.add(alias);
+                }
+            }
+        } catch (KeyStoreException e) {
+            log.error("Failed to list aliases from generated certificates KeyStore: {}", e.getMessage());
+        }
+        return aliases;
+    }
+
+    @Override
+    public boolean containsAlias(String alias) {
+        try {
+            return keyStore.isKeyEntry(alias);
+        } catch (KeyStoreException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public PrivateKey getKey(String alias) throws GeneralSecurityException {
+        return (PrivateKey) keyStore.getKey(alias, password);
+    }
+
+    @Override
+    public Certificate[] getCertificateChain(String alias) {
+        try {
+            return keyStore.getCertificateChain(alias);
+        } catch (KeyStoreException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String alias, PrivateKey privateKey, Certificate[] chain) throws IOException, GeneralSecurityException {
+        writeLock.lock();
+        try {
+            Map<String, KeyStore.Entry> previous = new HashMap<>();
+            previous.put(alias, currentEntry(alias));
+            keyStore.setKeyEntry(alias, privateKey, password, chain);
+            persistOrRestore(previous);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // All entries go into one rewrite of the file
+    @Override
+    public void putAll(List<SigningCertificate> entries) throws IOException, GeneralSecurityException {
+        writeLock.lock();
+        try {
+            Map<String, KeyStore.Entry> previous = new HashMap<>();
+            for (SigningCertificate entry : entries) {
+                if (!previous.containsKey(entry.getAlias())) {
+                    previous.put(entry.getAlias(), currentEntry(entry.getAlias()));
+                }
+                keyStore.setKeyEntry(entry.getAlias(), entry.getPrivateKey(), password, entry.getChain());
+            }
+            persistOrRestore(previous);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String alias) throws IOException, GeneralSecurityException {
+        writeLock.lock();
+        try {
+            Map<String, KeyStore.Entry> previous = new HashMap<>();
+            previous.put(alias, currentEntry(alias));
+            keyStore.deleteEntry(alias);
+            persistOrRestore(previous);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private KeyStore.Entry currentEntry(String alias) throws GeneralSecurityException {
+        return keyStore.isKeyEntry(alias) ? keyStore.getEntry(alias, new KeyStore.PasswordProtection(password)) : null;
+    }
+
+    // Puts the given entries (null for absent) back when the file could not be written, so memory matches disk
+    private void persistOrRestore(Map<String, KeyStore.Entry> previous) throws IOException, GeneralSecurityException {
+        try {
+            persist();
+        } catch (IOException | GeneralSecurityException e) {
+            KeyStore.PasswordProtection protection = new KeyStore.PasswordProtection(password);
+            for (Map.Entry<String, KeyStore.Entry> restore : previous.entrySet()) {
+                if (restore.getValue() == null) {
+                    keyStore.deleteEntry(restore.getKey());
+                } else {
+                    keyStore.setEntry(restore.getKey(), restore.getValue(), protection);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Written to a sibling temp file and renamed so a crash never leaves a truncated keystore
+    private void persist() throws IOException, GeneralSecurityException {
+        Path parent = keystorePath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, keystorePath.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                keyStore.store(out, password);
+            }
+            Files.move(tmp, keystorePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.info("Generated certificates KeyStore saved to: {}", keystorePath);
+    }
+}
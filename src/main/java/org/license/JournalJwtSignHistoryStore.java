@@ -0,0 +1,662 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+// Append-only sign history in memory-mapped segment files named after their first id. Records are length-prefixed and
+// CRC-checked, deletes are tombstone records, retention drops whole segments, and opening the journal rescans every
+// segment to rebuild its sparse id/time index.
+public class JournalJwtSignHistoryStore implements JwtSignHistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalJwtSignHistoryStore.class);
+
+    static final long MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private static final String EXTENSION = ".journal";
+    private static final int MAGIC = 0x4A534831; // "JSH1"
+    private static final int SEGMENT_HEADER = 8;
+    // Body length, then CRC32 of the body; the length is written last so a torn record reads as length 0 or a bad CRC
+    private static final int RECORD_HEADER = 8;
+    // Entry body: type, id, timestamp, flags, then common name, failure reason, original JWT and signed JWT
+    private static final int ENTRY_FIXED = 1 + 8 + 8 + 1;
+    private static final int TOMBSTONE_BODY = 1 + 8;
+
+    private static final byte ENTRY = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final byte SUCCESS = 1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int indexInterval;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<Long> deleted = new ConcurrentSkipListSet<>();
+    private final AtomicLong entries = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Segment active;
+    private long nextId = 1;
+
+    private JournalJwtSignHistoryStore(Path directory, long segmentSize, int indexInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+    }
+
+    public static JournalJwtSignHistoryStore open(Path directory, long segmentSize, int indexInterval) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size must be between 64KB and 2GB: " + segmentSize);
+        }
+        if (indexInterval < 1) {
+            throw new IllegalArgumentException("Journal index interval must be positive: " + indexInterval);
+        }
+        JournalJwtSignHistoryStore store = new JournalJwtSignHistoryStore(directory, segmentSize, indexInterval);
+        store.recover();
+        return store;
+    }
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        // Zero-padded names sort in id order
+        files.sort(null);
+
+        List<Long> tombstones = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            long baseId = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+            Segment segment = Segment.open(file, baseId, indexInterval);
+            segment.recover(tombstones, i == files.size() - 1);
+            segments.put(baseId, segment);
+            entries.addAndGet(segment.entries);
+            nextId = Math.max(nextId, Math.max(baseId, segment.lastId + 1));
+        }
+        for (Long id : tombstones) {
+            if (contains(id)) {
+                deleted.add(id);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(segmentSize);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        log.info("Sign history journal opened at {} ({} segments, {} rows, next id {}) in {} ms", directory,
+                segments.size(), count(), nextId, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void insertBatch(List<JwtSignHistory> histories) {
+        if (histories.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            for (JwtSignHistory history : histories) {
+                appendEntry(history);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to append to the sign history journal: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public JwtSignHistory save(JwtSignHistory history) {
+        insertBatch(List.of(history));
+        return history;
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        writeLock.lock();
+        try {
+            if (!contains(id) || !deleted.add(id)) {
+                return false;
+            }
+            appendTombstone(id);
+            return true;
+        } catch (IOException e) {
+            deleted.remove(id);
+            throw new IllegalStateException("Failed to append to the sign history journal: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return entries.get() - deleted.size();
+    }
+
+    @Override
+    public List<JwtSignHistory> findPage(JwtSignHistoryQuery query) {
+        List<JwtSignHistory> page = new ArrayList<>();
+        int limit = query.getLimit() + 1;
+        scan(query, history -> {
+            page.add(history);
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    @Override
+    public int streamRows(JwtSignHistoryQuery query, int maxRows, int fetchSize, Consumer<JwtSignHistory> consumer) {
+        int[] rowCount = {0};
+        if (maxRows <= 0) {
+            return 0;
+        }
+        scan(query, history -> {
+            consumer.accept(history);
+            return ++rowCount[0] < maxRows;
+        });
+        return rowCount[0];
+    }
+
+    @Override
+    public Long findIdFromNewest(long offset) {
+        long remaining = offset;
+        for (Segment segment : segments.descendingMap().values()) {
+            long live = segment.entries - tombstonesIn(segment).size();
+            if (remaining >= live) {
+                remaining -= live;
+                continue;
+            }
+            List<Long> ids = new ArrayList<>();
+            scanSegment(segment, SEGMENT_HEADER, segment.writePosition, new JwtSignHistoryQuery(), false, history -> ids.add(history.getId()));
+            // Appends since the live count was taken only add ids at the end
+            int index = (int) (live - 1 - remaining);
+            return index < ids.size() ? ids.get(index) : null;
+        }
+        return null;
+    }
+
+    @Override
+    public Long findFirstIdSince(LocalDateTime cutoff) {
+        JwtSignHistoryQuery query = new JwtSignHistoryQuery();
+        query.setFrom(cutoff);
+        return firstId(query);
+    }
+
+    @Override
+    public Long findMinId() {
+        return firstId(new JwtSignHistoryQuery());
+    }
+
+    @Override
+    public Long findMaxId() {
+        for (Segment segment : segments.descendingMap().values()) {
+            if (segment.entries == 0) {
+                continue;
+            }
+            long lastId = segment.lastId;
+            if (!deleted.contains(lastId)) {
+                return lastId;
+            }
+            Long[] newest = {null};
+            scanSegment(segment, SEGMENT_HEADER, segment.writePosition, new JwtSignHistoryQuery(), false, history -> {
+                newest[0] = history.getId();
+                return true;
+            });
+            if (newest[0] != null) {
+                return newest[0];
+            }
+        }
+        return null;
+    }
+
+    // Drops every segment whose rows are all below the id, rolling the active segment first when it qualifies
+    @Override
+    public int deleteWithIdBelow(long id) {
+        writeLock.lock();
+        try {
+            int dropped = 0;
+            for (Segment segment : segments.values()) {
+                if (segment.lastId >= id) {
+                    break;
+                }
+                if (segment == active) {
+                    if (segment.entries == 0) {
+                        break;
+                    }
+                    roll(segmentSize);
+                }
+                segments.remove(segment.baseId);
+                NavigableSet<Long> tombstoned = tombstonesIn(segment);
+                dropped += segment.entries - tombstoned.size();
+                tombstoned.clear();
+                entries.addAndGet(-segment.entries);
+                segment.delete();
+            }
+            return dropped;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to roll the sign history journal: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private Long firstId(JwtSignHistoryQuery query) {
+        Long[] first = {null};
+        scan(query, history -> {
+            first[0] = history.getId();
+            return false;
+        });
+        return first[0];
+    }
+
+    private boolean contains(long id) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(id);
+        return entry != null && id <= entry.getValue().lastId;
+    }
+
+    private NavigableSet<Long> tombstonesIn(Segment segment) {
+        long lastId = segment.lastId;
+        if (lastId < segment.baseId) {
+            return deleted.subSet(segment.baseId, true, segment.baseId, false);
+        }
+        return deleted.subSet(segment.baseId, true, lastId, true);
+    }
+
+    // Visits matching rows in id order; skips segments by id and time range and seeks inside each one with its index
+    private void scan(JwtSignHistoryQuery query, Predicate<JwtSignHistory> visitor) {
+        Long after = query.getAfter();
+        long from = query.getFrom() == null ? NO_TIMESTAMP : nanos(query.getFrom());
+        long to = query.getTo() == null ? Long.MAX_VALUE : nanos(query.getTo());
+        for (Segment segment : segments.values()) {
+            int end = segment.writePosition;
+            if (segment.entries == 0 || (after != null && segment.lastId <= after)
+                    || (query.getFrom() != null && segment.maxTimestamp < from)
+                    || (query.getTo() != null && segment.minTimestamp >= to)) {
+                continue;
+            }
+            int start = segment.seek(after, query.getFrom() == null ? null : from);
+            if (!scanSegment(segment, start, end, query, query.isIncludeJwt(), visitor)) {
+                return;
+            }
+        }
+    }
+
+    // Returns false once the visitor asks to stop
+    private boolean scanSegment(Segment segment, int start, int end, JwtSignHistoryQuery query, boolean includeJwt,
+                                Predicate<JwtSignHistory> visitor) {
+        Long after = query.getAfter();
+        boolean timeFiltered = query.getFrom() != null || query.getTo() != null;
+        long from = query.getFrom() == null ? NO_TIMESTAMP : nanos(query.getFrom());
+        long to = query.getTo() == null ? Long.MAX_VALUE : nanos(query.getTo());
+        byte[] commonNameFilter = utf8(query.getCommonName());
+
+        ByteBuffer view = segment.buffer.duplicate();
+        int position = start;
+        while (position < end) {
+            int body = position + RECORD_HEADER;
+            position = body + view.getInt(position);
+            if (view.get(body) != ENTRY) {
+                continue;
+            }
+            long id = view.getLong(body + 1);
+            if ((after != null && id <= after) || deleted.contains(id)) {
+                continue;
+            }
+            long timestamp = view.getLong(body + 9);
+            if (timeFiltered && (timestamp == NO_TIMESTAMP || timestamp < from || timestamp >= to)) {
+                continue;
+            }
+            boolean success = (view.get(body + 17) & SUCCESS) != 0;
+            if (query.getSuccess() != null && query.getSuccess() != success) {
+                continue;
+            }
+            int field = body + ENTRY_FIXED;
+            if (commonNameFilter != null && !fieldEquals(view, field, commonNameFilter)) {
+                continue;
+            }
+
+            JwtSignHistory history = new JwtSignHistory();
+            history.setId(id);
+            history.setTimestamp(timestamp == NO_TIMESTAMP ? null : timestampOf(timestamp));
+            history.setSuccess(success);
+            history.setCommonName(readString(view, field));
+            field = nextField(view, field);
+            history.setFailureReason(readString(view, field));
+            if (includeJwt) {
+                field = nextField(view, field);
+                history.setOriginalJwt(readString(view, field));
+                field = nextField(view, field);
+                history.setSignedJwtResult(readString(view, field));
+            }
+            if (!visitor.test(history)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendEntry(JwtSignHistory history) throws IOException {
+        byte[] commonName = utf8(history.getCommonName());
+        byte[] failureReason = utf8(history.getFailureReason());
+        byte[] originalJwt = utf8(history.getOriginalJwt());
+        byte[] signedJwt = utf8(history.getSignedJwtResult());
+        int bodyLength = ENTRY_FIXED + fieldSize(commonName) + fieldSize(failureReason) + fieldSize(originalJwt) + fieldSize(signedJwt);
+        Segment segment = segmentFor(RECORD_HEADER + bodyLength);
+
+        long id = nextId;
+        long timestamp = history.getTimestamp() == null ? NO_TIMESTAMP : nanos(history.getTimestamp());
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        int body = position + RECORD_HEADER;
+        buffer.put(body, ENTRY);
+        buffer.putLong(body + 1, id);
+        buffer.putLong(body + 9, timestamp);
+        buffer.put(body + 17, history.isSuccess() ? SUCCESS : 0);
+        int field = putField(buffer, body + ENTRY_FIXED, commonName);
+        field = putField(buffer, field, failureReason);
+        field = putField(buffer, field, originalJwt);
+        putField(buffer, field, signedJwt);
+        buffer.putInt(position + 4, crc(buffer, body, bodyLength));
+        buffer.putInt(position, bodyLength);
+
+        segment.appended(position, RECORD_HEADER + bodyLength, id, timestamp);
+        entries.incrementAndGet();
+        nextId = id + 1;
+        history.setId(id);
+    }
+
+    private void appendTombstone(long id) throws IOException {
+        Segment segment = segmentFor(RECORD_HEADER + TOMBSTONE_BODY);
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        int body = position + RECORD_HEADER;
+        buffer.put(body, TOMBSTONE);
+        buffer.putLong(body + 1, id);
+        buffer.putInt(position + 4, crc(buffer, body, TOMBSTONE_BODY));
+        buffer.putInt(position, TOMBSTONE_BODY);
+        segment.writePosition = position + RECORD_HEADER + TOMBSTONE_BODY;
+    }
+
+    private Segment segmentFor(int recordSize) throws IOException {
+        Segment segment = active;
+        if (segment.capacity() - segment.writePosition >= recordSize) {
+            return segment;
+        }
+        return roll(Math.max(segmentSize, (long) SEGMENT_HEADER + recordSize));
+    }
+
+    private Segment roll(long capacity) throws IOException {
+        Segment previous = active;
+        if (previous.writePosition == SEGMENT_HEADER) {
+            // Nothing written yet, so the replacement would take the same base id
+            segments.remove(previous.baseId);
+            previous.delete();
+        } else {
+            previous.force();
+            if (previous.entries == 0) {
+                // Only tombstones; skip one id so the next segment gets a base id of its own
+                nextId = previous.baseId + 1;
+            }
+        }
+        active = createSegment(capacity);
+        return active;
+    }
+
+    private Segment createSegment(long capacity) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", nextId, EXTENSION));
+        Segment segment = Segment.create(file, nextId, capacity, indexInterval);
+        segments.put(nextId, segment);
+        return segment;
+    }
+
+    private static long nanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    private static LocalDateTime timestampOf(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Fields are an int length (-1 for null) followed by UTF-8 bytes
+    private static int fieldSize(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static int putField(ByteBuffer buffer, int position, byte[] value) {
+        buffer.putInt(position, value == null ? -1 : value.length);
+        if (value != null) {
+            buffer.put(position + 4, value);
+        }
+        return position + fieldSize(value);
+    }
+
+    private static int nextField(ByteBuffer buffer, int position) {
+        return position + 4 + Math.max(0, buffer.getInt(position));
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean fieldEquals(ByteBuffer buffer, int position, byte[] expected) {
+        int length = buffer.getInt(position);
+        return length == expected.length && buffer.slice(position + 4, length).equals(ByteBuffer.wrap(expected));
+    }
+
+    private static int crc(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static final class IndexEntry {
+        private final int offset;
+        private final long id;
+        // Largest timestamp of any record before this one in the segment, so the entry stays valid for out-of-order rows
+        private final long maxTimestampBefore;
+
+        private IndexEntry(int offset, long id, long maxTimestampBefore) {
+            this.offset = offset;
+            this.id = id;
+            this.maxTimestampBefore = maxTimestampBefore;
+        }
+    }
+
+    // Written by the thread holding the store's write lock; readers see records up to the volatile write position
+    private static final class Segment {
+        private final Path path;
+        private final long baseId;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int indexInterval;
+
+        private volatile int writePosition = SEGMENT_HEADER;
+        private volatile int entries;
+        private volatile long lastId;
+        private volatile long minTimestamp = Long.MAX_VALUE;
+        private volatile long maxTimestamp = Long.MIN_VALUE;
+        private volatile IndexEntry[] index = new IndexEntry[0];
+
+        private Segment(Path path, long baseId, FileChannel channel, MappedByteBuffer buffer, int indexInterval) {
+            this.path = path;
+            this.baseId = baseId;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.indexInterval = indexInterval;
+            this.lastId = baseId - 1;
+        }
+
+        static Segment create(Path path, long baseId, long capacity, int indexInterval) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            return new Segment(path, baseId, channel, buffer, indexInterval);
+        }
+
+        static Segment open(Path path, long baseId, int indexInterval) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < SEGMENT_HEADER || size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IllegalStateException("Not a sign history journal segment: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IllegalStateException("Not a sign history journal segment: " + path);
+            }
+            return new Segment(path, baseId, channel, buffer, indexInterval);
+        }
+
+        // Replays the records up to the first one that fails its length or CRC check, rebuilding the index
+        void recover(List<Long> tombstones, boolean newest) {
+            int position = SEGMENT_HEADER;
+            int capacity = capacity();
+            while (position + RECORD_HEADER <= capacity) {
+                int length = buffer.getInt(position);
+                int body = position + RECORD_HEADER;
+                if (length <= 0 || body + length > capacity || buffer.getInt(position + 4) != crc(buffer, body, length)) {
+                    break;
+                }
+                if (buffer.get(body) == ENTRY) {
+                    appended(position, RECORD_HEADER + length, buffer.getLong(body + 1), buffer.getLong(body + 9));
+                } else {
+                    tombstones.add(buffer.getLong(body + 1));
+                    writePosition = body + length;
+                }
+                position = body + length;
+            }
+            if (position + RECORD_HEADER <= capacity && buffer.getLong(position) != 0) {
+                log.warn("Discarding unreadable records from offset {} of {}", position, path);
+                if (newest) {
+                    // Appends resume here, so clear the torn bytes rather than leave them behind the new records
+                    for (int i = position; i < capacity; i++) {
+                        buffer.put(i, (byte) 0);
+                    }
+                }
+            }
+        }
+
+        void appended(int offset, int size, long id, long timestamp) {
+            if (entries % indexInterval == 0) {
+                IndexEntry[] current = index;
+                IndexEntry[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = new IndexEntry(offset, id, maxTimestamp);
+                index = next;
+            }
+            if (timestamp != NO_TIMESTAMP) {
+                minTimestamp = Math.min(minTimestamp, timestamp);
+                maxTimestamp = Math.max(maxTimestamp, timestamp);
+            }
+            lastId = id;
+            entries = entries + 1;
+            writePosition = offset + size;
+        }
+
+        // Offset of the last indexed record that cannot skip past a match for the id cursor or start time
+        int seek(Long after, Long from) {
+            IndexEntry[] current = index;
+            int start = 0;
+            if (after != null) {
+                start = Math.max(start, lastIndexWhere(current, entry -> entry.id <= after + 1));
+            }
+            if (from != null) {
+                start = Math.max(start, lastIndexWhere(current, entry -> entry.maxTimestampBefore < from));
+            }
+            return current.length == 0 ? SEGMENT_HEADER : current[start].offset;
+        }
+
+        // Binary search over a predicate that holds for a prefix of the index; 0 when it holds for none
+        private static int lastIndexWhere(IndexEntry[] entries, Predicate<IndexEntry> predicate) {
+            int low = 0;
+            int high = entries.length - 1;
+            int found = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (predicate.test(entries[mid])) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() throws IOException {
+            force();
+            channel.close();
+        }
+
+        // The mapping stays valid for readers still scanning it until the buffer is collected
+        void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete sign history journal segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
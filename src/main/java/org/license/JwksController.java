@@ -0,0 +1,42 @@
+package org.license;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+@RestController
+public class JwksController {
+
+    private static final MediaType JWK_SET_JSON = MediaType.parseMediaType("application/jwk-set+json");
+
+    private final JwtSigningService jwtSigningService;
+
+    @Value("${jwt.jwks.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    public JwksController(JwtSigningService jwtSigningService) {
+        this.jwtSigningService = jwtSigningService;
+    }
+
+    // Prebuilt bytes with a content-hash ETag; a matching If-None-Match gets a bodiless 304
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<byte[]> getJwks(WebRequest webRequest) {
+        JwksDocument jwks = jwtSigningService.getJwks();
+        CacheControl cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().mustRevalidate();
+        if (webRequest.checkNotModified(jwks.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(jwks.getEtag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(jwks.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(JWK_SET_JSON)
+                .body(jwks.getBody());
+    }
+}
@@ -0,0 +1,121 @@
+package org.license;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Serialized JWK Set for one certificate snapshot; rebuilt only when the snapshot version changes
+public final class JwksDocument {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final long snapshotVersion;
+    private final byte[] body;
+    private final String etag;
+
+    private JwksDocument(long snapshotVersion, byte[] body, String etag) {
+        this.snapshotVersion = snapshotVersion;
+        this.body = body;
+        this.etag = etag;
+    }
+
+    static JwksDocument build(CertificateSnapshot snapshot, ObjectMapper objectMapper) {
+        List<SigningCertificate> certificates = new ArrayList<>(snapshot.all());
+        // Stable order so the same certificate set always produces the same bytes and ETag
+        certificates.sort(Comparator.comparing(SigningCertificate::getAlias));
+
+        List<Map<String, Object>> keys = new ArrayList<>(certificates.size());
+        for (SigningCertificate certificate : certificates) {
+            keys.add(toJwk(certificate));
+        }
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("keys", keys));
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            String etag = "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            return new JwksDocument(snapshot.getVersion(), body, etag);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot serialize JWK set", e);
+        }
+    }
+
+    static Map<String, Object> toJwk(SigningCertificate certificate) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        PublicKey publicKey = certificate.getPublicKey();
+        KeyType keyType = certificate.getKeyType();
+        if (publicKey instanceof RSAPublicKey rsa) {
+            jwk.put("kty", "RSA");
+            jwk.put("n", BASE64URL.encodeToString(unsigned(rsa.getModulus(), (rsa.getModulus().bitLength() + 7) / 8)));
+            jwk.put("e", BASE64URL.encodeToString(unsigned(rsa.getPublicExponent(), (rsa.getPublicExponent().bitLength() + 7) / 8)));
+        } else if (publicKey instanceof ECPublicKey ec) {
+            int size = (ec.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+            jwk.put("kty", "EC");
+            jwk.put("crv", keyType == KeyType.EC_P384 ? "P-384" : "P-256");
+            jwk.put("x", BASE64URL.encodeToString(unsigned(ec.getW().getAffineX(), size)));
+            jwk.put("y", BASE64URL.encodeToString(unsigned(ec.getW().getAffineY(), size)));
+        } else if (keyType == KeyType.ED25519) {
+            // The raw key is the last 32 bytes of the X.509 SubjectPublicKeyInfo encoding
+            byte[] encoded = publicKey.getEncoded();
+            jwk.put("kty", "OKP");
+            jwk.put("crv", "Ed25519");
+            jwk.put("x", BASE64URL.encodeToString(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)));
+        } else {
+            throw new IllegalArgumentException("Unsupported public key type: " + publicKey.getAlgorithm());
+        }
+        jwk.put("use", "sig");
+        jwk.put("alg", keyType.getJwsAlgorithm().getId());
+        jwk.put("kid", certificate.getKeyId());
+        jwk.put("x5t#S256", certificate.getKeyId());
+
+        List<String> x5c = new ArrayList<>();
+        try {
+            for (X509Certificate cert : certificate.getChain()) {
+                x5c.add(Base64.getEncoder().encodeToString(cert.getEncoded()));
+            }
+        } catch (CertificateEncodingException e) {
+            throw new IllegalArgumentException("Cannot encode certificate chain for " + certificate.getAlias(), e);
+        }
+        jwk.put("x5c", x5c);
+        return jwk;
+    }
+
+    // Big-endian magnitude left-padded or trimmed to exactly 'length' bytes
+    private static byte[] unsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length == length) {
+            return bytes;
+        }
+        byte[] result = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, result, length - copy, copy);
+        return result;
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    // Shared buffer; callers must not modify it
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
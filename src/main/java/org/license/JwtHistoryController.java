@@ -2,12 +2,12 @@ package org.license;
 
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemWriter;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.StringWriter;
 import java.security.cert.X509Certificate;
@@ -18,43 +18,91 @@ import java.util.List;
 @RequestMapping("/history")
 public class JwtHistoryController {
 
-    private final JwtSignHistoryRepository jwtSignHistoryRepository;
+    private final JwtSignHistoryStore jwtSignHistoryStore;
+    private final JwtSignHistoryWriter jwtSignHistoryWriter;
+    private final JwtSignHistoryRetention jwtSignHistoryRetention;
+    private final JwtSignHistoryExporter jwtSignHistoryExporter;
+    private final JwtPayloadCodec jwtPayloadCodec;
 
-    @Value("${jwt.history.max-entries:100}")
-    private int maxEntries;
-
-    public JwtHistoryController(JwtSignHistoryRepository jwtSignHistoryRepository) {
-        this.jwtSignHistoryRepository = jwtSignHistoryRepository;
+    public JwtHistoryController(JwtSignHistoryStore jwtSignHistoryStore, JwtSignHistoryWriter jwtSignHistoryWriter,
+                                JwtSignHistoryRetention jwtSignHistoryRetention, JwtSignHistoryExporter jwtSignHistoryExporter,
+                                JwtPayloadCodec jwtPayloadCodec) {
+        this.jwtSignHistoryStore = jwtSignHistoryStore;
+        this.jwtSignHistoryWriter = jwtSignHistoryWriter;
+        this.jwtSignHistoryRetention = jwtSignHistoryRetention;
+        this.jwtSignHistoryExporter = jwtSignHistoryExporter;
+        this.jwtPayloadCodec = jwtPayloadCodec;
     }
 
-    // New API for JwtSignHistory
+    // Keyset-paginated; pass the X-Next-Cursor header value back as 'after' to fetch the next page
     @GetMapping
-    public ResponseEntity<List<JwtSignHistory>> getAllSignHistory() {
-        List<JwtSignHistory> history = jwtSignHistoryRepository.findAll();
+    public ResponseEntity<List<JwtSignHistory>> getSignHistory(JwtSignHistoryQuery query) {
+        List<JwtSignHistory> history = jwtSignHistoryStore.findPage(query);
+        if (history.size() > query.getLimit()) {
+            history = history.subList(0, query.getLimit());
+            String nextCursor = String.valueOf(history.get(history.size() - 1).getId());
+            return ResponseEntity.ok().header("X-Next-Cursor", nextCursor).body(history);
+        }
         return ResponseEntity.ok(history);
     }
 
-    @PostMapping
-    public ResponseEntity<JwtSignHistory> addSignHistory(@RequestBody JwtSignHistory history) {
-        // Check if the number of entries exceeds the maximum
-        long currentCount = jwtSignHistoryRepository.count();
-        if (currentCount >= maxEntries) {
-            // Find and delete the oldest entry
-            jwtSignHistoryRepository.findAll(Sort.by(Sort.Direction.ASC, "timestamp"))
-                                    .stream()
-                                    .findFirst()
-                                    .ifPresent(oldest -> jwtSignHistoryRepository.delete(oldest));
+    // Streams every matching row; accepts the same filters as GET /history, and 'after' resumes an export
+    @GetMapping("/export")
+    public ResponseEntity<?> exportSignHistory(JwtSignHistoryQuery query,
+                                               @RequestParam(defaultValue = "ndjson") String format,
+                                               @RequestParam(defaultValue = "false") boolean gzip) {
+        JwtSignHistoryExporter.Format exportFormat;
+        try {
+            exportFormat = JwtSignHistoryExporter.Format.fromString(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
 
+        StreamingResponseBody body = out -> jwtSignHistoryExporter.export(query, exportFormat, gzip, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + JwtSignHistoryExporter.fileName(exportFormat, gzip) + "\"")
+                .body(body);
+    }
+
+    @PostMapping
+    public ResponseEntity<JwtSignHistory> addSignHistory(@RequestBody JwtSignHistory history) {
+        // Row limits are enforced by JwtSignHistoryRetention, not per insert
         history.setTimestamp(LocalDateTime.now()); // Set timestamp on creation
-        JwtSignHistory savedHistory = jwtSignHistoryRepository.save(history);
+        JwtSignHistory savedHistory = jwtSignHistoryStore.save(history);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedHistory);
     }
 
+    @GetMapping("/writer/stats")
+    public ResponseEntity<JwtSignHistoryWriter.WriterStats> getWriterStats() {
+        return ResponseEntity.ok(jwtSignHistoryWriter.getStats());
+    }
+
+    @GetMapping("/retention/stats")
+    public ResponseEntity<JwtSignHistoryRetention.RetentionStats> getRetentionStats() {
+        return ResponseEntity.ok(jwtSignHistoryRetention.getStats());
+    }
+
+    @GetMapping("/compression/stats")
+    public ResponseEntity<JwtPayloadCodec.CompressionStats> getCompressionStats() {
+        return ResponseEntity.ok(jwtPayloadCodec.getStats());
+    }
+
+    // Retrains the payload dictionary on the newest stored payloads; earlier payloads keep the dictionary they used
+    @PostMapping("/compression/dictionary")
+    public ResponseEntity<?> trainCompressionDictionary() {
+        try {
+            return ResponseEntity.ok(jwtPayloadCodec.trainDictionary());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error training dictionary: " + e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteSignHistory(@PathVariable Long id) {
-        if (jwtSignHistoryRepository.existsById(id)) {
-            jwtSignHistoryRepository.deleteById(id);
+        if (jwtSignHistoryStore.deleteById(id)) {
             return ResponseEntity.ok().body("Sign history with ID " + id + " deleted successfully.");
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Sign history with ID " + id + " not found.");
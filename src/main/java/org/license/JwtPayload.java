@@ -0,0 +1,58 @@
+package org.license;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// One deduplicated, compressed JWT header or claims document; rows are written and read through JDBC by
+// JwtSignHistoryRepositoryImpl, the entity only keeps the table in the Hibernate-managed schema
+@Entity
+@Table(name = "jwt_payload")
+public class JwtPayload {
+
+    // Base64url SHA-256 of the decompressed bytes
+    @Id
+    @Column(length = 43)
+    private String hash;
+
+    @Column(name = "dictionary_id")
+    private int dictionaryId;
+
+    @Column(name = "raw_length")
+    private int rawLength;
+
+    private byte[] data;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    public void setDictionaryId(int dictionaryId) {
+        this.dictionaryId = dictionaryId;
+    }
+
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    public void setRawLength(int rawLength) {
+        this.rawLength = rawLength;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
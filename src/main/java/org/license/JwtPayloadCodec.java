@@ -0,0 +1,462 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Raw-deflate compression of history payloads against a preset dictionary trained on stored claims. Payloads are keyed by
+// the SHA-256 of their bytes so identical headers and claims are stored once; each keeps the id of the dictionary it used.
+@Service
+public class JwtPayloadCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtPayloadCodec.class);
+
+    // Payloads that deflate would not shrink are stored as-is
+    static final int STORED = -1;
+    static final int SEED_DICTIONARY = 0;
+    private static final int NOT_LOADED = -2;
+
+    // Deflate only looks back 32KB, so a larger dictionary would never be referenced
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] SEED = ("{\"alg\":\"RS256\",\"kid\":\"\",\"typ\":\"JWT\"}{\"alg\":\"ES256\",\"kid\":\"\"}"
+            + "{\"iss\":\"\",\"sub\":\"\",\"aud\":\"\",\"exp\":,\"nbf\":,\"iat\":,\"jti\":\"\"}").getBytes(StandardCharsets.UTF_8);
+    // JSON keys (with their colon), string values and numbers
+    private static final Pattern FRAGMENT = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"\\s*:\\s*|\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+(?:\\.\\d+)?");
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int level;
+    private final int sampleSize;
+
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile int currentDictionary = NOT_LOADED;
+    // Guards publishing the current dictionary only; queries run before it is taken, so the history writer never
+    // waits on it while another caller waits for the writer's connection
+    private final ReentrantLock dictionaryLock = new ReentrantLock();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final AtomicLong seedCompressions = new AtomicLong();
+    private final AtomicBoolean autoTrained = new AtomicBoolean();
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong logicalBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong payloadsStored = new AtomicLong();
+    private final AtomicLong payloadsDeduplicated = new AtomicLong();
+
+    public JwtPayloadCodec(JdbcTemplate jdbcTemplate,
+                           @Value("${jwt.history.compression.level:6}") int level,
+                           @Value("${jwt.history.compression.dictionary-sample-size:1000}") int sampleSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.level = level;
+        this.sampleSize = sampleSize;
+        dictionaries.put(SEED_DICTIONARY, SEED);
+    }
+
+    public static String hash(byte[] raw) {
+        try {
+            return BASE64URL.encodeToString(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Compressed compress(byte[] raw) {
+        int dictionaryId = currentDictionary();
+        byte[] dictionary = dictionary(dictionaryId);
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setDictionary(dictionary);
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[raw.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished()) {
+                return new Compressed(STORED, raw);
+            }
+            if (dictionaryId == SEED_DICTIONARY) {
+                seedCompressions.incrementAndGet();
+            }
+            return new Compressed(dictionaryId, Arrays.copyOf(buffer, length));
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] decompress(int dictionaryId, byte[] data, int length) {
+        if (dictionaryId == STORED) {
+            return data;
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(dictionary(dictionaryId));
+            inflater.setInput(data);
+            byte[] raw = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalStateException("Compressed history payload is truncated (" + read + " of " + length + " bytes)");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed history payload is corrupt: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Header and payload JSON plus raw signature of a compact JWS, or null when the text would not round-trip
+    public static CompactJws split(String signedJwt) {
+        if (signedJwt == null) {
+            return null;
+        }
+        int first = signedJwt.indexOf('.');
+        int second = first < 0 ? -1 : signedJwt.indexOf('.', first + 1);
+        if (second < 0 || signedJwt.indexOf('.', second + 1) >= 0) {
+            return null;
+        }
+        try {
+            CompactJws jws = new CompactJws(
+                    BASE64URL_DECODER.decode(signedJwt.substring(0, first)),
+                    BASE64URL_DECODER.decode(signedJwt.substring(first + 1, second)),
+                    BASE64URL_DECODER.decode(signedJwt.substring(second + 1)));
+            // Non-canonical base64url (stray trailing bits) would not come back byte-for-byte
+            return jws.toCompact().equals(signedJwt) ? jws : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public void recordWrite(int rows, long logical, long stored, int newPayloads, int deduplicated) {
+        rowsWritten.addAndGet(rows);
+        logicalBytes.addAndGet(logical);
+        storedBytes.addAndGet(stored);
+        payloadsStored.addAndGet(newPayloads);
+        payloadsDeduplicated.addAndGet(deduplicated);
+    }
+
+    // Trains a dictionary once enough payloads have been compressed with the built-in seed
+    public void trainIfDue() {
+        if (currentDictionary == SEED_DICTIONARY && seedCompressions.get() >= sampleSize && autoTrained.compareAndSet(false, true)) {
+            try {
+                trainDictionary();
+            } catch (Exception e) {
+                log.warn("Failed to train the history payload dictionary: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Samples the newest stored payloads and makes a dictionary of their most common JSON fragments current
+    public DictionaryInfo trainDictionary() {
+        if (!training.compareAndSet(false, true)) {
+            throw new IllegalStateException("A history payload dictionary is already being trained.");
+        }
+        try {
+            List<byte[]> samples = jdbcTemplate.query("SELECT dictionary_id, data, raw_length FROM jwt_payload ORDER BY rowid DESC LIMIT ?",
+                    (rs, rowNum) -> decompress(rs.getInt("dictionary_id"), rs.getBytes("data"), rs.getInt("raw_length")), sampleSize);
+            if (samples.isEmpty()) {
+                throw new IllegalStateException("No stored payloads to train a dictionary on.");
+            }
+            byte[] dictionary = train(samples, MAX_DICTIONARY_SIZE);
+            int id = insertDictionary(dictionary, samples.size());
+            dictionaries.put(id, dictionary);
+            dictionaryLock.lock();
+            try {
+                currentDictionary = id;
+            } finally {
+                dictionaryLock.unlock();
+            }
+            log.info("Trained history payload dictionary {} ({} bytes from {} samples)", id, dictionary.length, samples.size());
+            return new DictionaryInfo(id, dictionary.length, samples.size());
+        } finally {
+            training.set(false);
+        }
+    }
+
+    // Insert and last_insert_rowid() share one connection, so the id is this row's even with concurrent writers
+    private int insertDictionary(byte[] dictionary, int samples) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO jwt_payload_dictionary (content, sample_size, created_at) VALUES (?, ?, ?)")) {
+                insert.setBytes(1, dictionary);
+                insert.setInt(2, samples);
+                insert.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                insert.executeUpdate();
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
+    }
+
+    static byte[] train(List<byte[]> samples, int maxSize) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (byte[] sample : samples) {
+            Set<String> fragments = new HashSet<>();
+            Matcher matcher = FRAGMENT.matcher(new String(sample, StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                fragments.add(matcher.group());
+            }
+            fragments.forEach(fragment -> documentFrequency.merge(fragment, 1, Integer::sum));
+        }
+
+        int minFrequency = Math.max(2, samples.size() / 100);
+        List<String> ranked = documentFrequency.entrySet().stream()
+                .filter(entry -> entry.getValue() >= minFrequency)
+                .sorted(Comparator.comparingLong((Map.Entry<String, Integer> entry) -> (long) entry.getValue() * entry.getKey().length()).reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+
+        // Deflate encodes near matches more cheaply than far ones, so the most valuable fragments go at the end
+        Deque<byte[]> picked = new ArrayDeque<>();
+        int size = 0;
+        for (String fragment : ranked) {
+            byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length <= maxSize) {
+                picked.addFirst(bytes);
+                size += bytes.length;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        picked.forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+
+    public CompressionStats getStats() {
+        Map<String, Object> totals = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS payloads, COALESCE(SUM(raw_length), 0) AS raw, COALESCE(SUM(LENGTH(data)), 0) AS compressed FROM jwt_payload");
+        long payloads = ((Number) totals.get("payloads")).longValue();
+        long raw = ((Number) totals.get("raw")).longValue();
+        long compressed = ((Number) totals.get("compressed")).longValue();
+        int dictionaryId = currentDictionary();
+        return new CompressionStats(dictionaryId, dictionary(dictionaryId).length, payloads, raw, compressed,
+                rowsWritten.get(), logicalBytes.get(), storedBytes.get(), payloadsStored.get(), payloadsDeduplicated.get());
+    }
+
+    private int currentDictionary() {
+        int id = currentDictionary;
+        if (id >= SEED_DICTIONARY) {
+            return id;
+        }
+        Integer latest = jdbcTemplate.queryForObject("SELECT MAX(id) FROM jwt_payload_dictionary", Integer.class);
+        dictionaryLock.lock();
+        try {
+            // A dictionary trained while the query ran is newer than what it returned
+            if (currentDictionary < SEED_DICTIONARY) {
+                currentDictionary = latest == null ? SEED_DICTIONARY : latest;
+            }
+            return currentDictionary;
+        } finally {
+            dictionaryLock.unlock();
+        }
+    }
+
+    // Loaded outside the map so no bin lock is held across the query; dictionaries never change, so a racing
+    // duplicate load is harmless
+    private byte[] dictionary(int id) {
+        byte[] dictionary = dictionaries.get(id);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        List<byte[]> content = jdbcTemplate.query("SELECT content FROM jwt_payload_dictionary WHERE id = ?",
+                (rs, rowNum) -> rs.getBytes("content"), id);
+        if (content.isEmpty()) {
+            throw new IllegalStateException("History payload dictionary " + id + " is missing");
+        }
+        byte[] existing = dictionaries.putIfAbsent(id, content.get(0));
+        return existing != null ? existing : content.get(0);
+    }
+
+    public static class Compressed {
+        private final int dictionaryId;
+        private final byte[] data;
+
+        public Compressed(int dictionaryId, byte[] data) {
+            this.dictionaryId = dictionaryId;
+            this.data = data;
+        }
+
+        public int getDictionaryId() {
+            return dictionaryId;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    public static class CompactJws {
+        private final byte[] header;
+        private final byte[] payload;
+        private final byte[] signature;
+
+        public CompactJws(byte[] header, byte[] payload, byte[] signature) {
+            this.header = header;
+            this.payload = payload;
+            this.signature = signature;
+        }
+
+        public byte[] getHeader() {
+            return header;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        public String toCompact() {
+            return BASE64URL.encodeToString(header) + "." + BASE64URL.encodeToString(payload) + "." + BASE64URL.encodeToString(signature);
+        }
+    }
+
+    public static class DictionaryInfo {
+        private final int id;
+        private final int size;
+        private final int samples;
+
+        public DictionaryInfo(int id, int size, int samples) {
+            this.id = id;
+            this.size = size;
+            this.samples = samples;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+    }
+
+    public static class CompressionStats {
+        private final int dictionaryId;
+        private final int dictionarySize;
+        private final long payloads;
+        private final long payloadBytes;
+        private final long compressedBytes;
+        private final long rowsWritten;
+        private final long logicalBytesWritten;
+        private final long storedBytesWritten;
+        private final long payloadsStored;
+        private final long payloadsDeduplicated;
+
+        public CompressionStats(int dictionaryId, int dictionarySize, long payloads, long payloadBytes, long compressedBytes,
+                                long rowsWritten, long logicalBytesWritten, long storedBytesWritten,
+                                long payloadsStored, long payloadsDeduplicated) {
+            this.dictionaryId = dictionaryId;
+            this.dictionarySize = dictionarySize;
+            this.payloads = payloads;
+            this.payloadBytes = payloadBytes;
+            this.compressedBytes = compressedBytes;
+            this.rowsWritten = rowsWritten;
+            this.logicalBytesWritten = logicalBytesWritten;
+            this.storedBytesWritten = storedBytesWritten;
+            this.payloadsStored = payloadsStored;
+            this.payloadsDeduplicated = payloadsDeduplicated;
+        }
+
+        public int getDictionaryId() {
+            return dictionaryId;
+        }
+
+        public int getDictionarySize() {
+            return dictionarySize;
+        }
+
+        // Unique payloads currently stored, their decompressed size and their size on disk
+        public long getPayloads() {
+            return payloads;
+        }
+
+        public long getPayloadBytes() {
+            return payloadBytes;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        // Deflate with the dictionary alone
+        public double getCompressionRatio() {
+            return compressedBytes == 0 ? 0.0 : (double) payloadBytes / compressedBytes;
+        }
+
+        // Since startup: JWT text handed to the store versus new payload and signature bytes actually written
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        public long getLogicalBytesWritten() {
+            return logicalBytesWritten;
+        }
+
+        public long getStoredBytesWritten() {
+            return storedBytesWritten;
+        }
+
+        public long getPayloadsStored() {
+            return payloadsStored;
+        }
+
+        public long getPayloadsDeduplicated() {
+            return payloadsDeduplicated;
+        }
+
+        // Compression and deduplication together
+        public double getEffectiveRatio() {
+            return storedBytesWritten == 0 ? 0.0 : (double) logicalBytesWritten / storedBytesWritten;
+        }
+    }
+}
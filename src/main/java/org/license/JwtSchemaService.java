@@ -6,18 +6,25 @@ import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
 import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -27,10 +34,24 @@ public class JwtSchemaService {
     private static final Logger log = LoggerFactory.getLogger(JwtSchemaService.class);
 
     private final String schemaDirectory;
+    private final int maxCachedSchemas;
+    private final MeterRegistry meterRegistry;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V202012);
 
-    public JwtSchemaService(@Value("${jwt.schema.directory}") String schemaDirectory) {
+    // Compiled schemas by schema name. Every file change bumps the generation; a compilation is only stored if the
+    // generation is still the one it started under, checked atomically with the store
+    private final Map<String, CompiledSchema> compiledSchemas = new ConcurrentHashMap<>();
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final AtomicLong accessClock = new AtomicLong();
+    private WatchService watchService;
+
+    public JwtSchemaService(@Value("${jwt.schema.directory}") String schemaDirectory,
+                            @Value("${jwt.schema.cache.max-entries:256}") int maxCachedSchemas,
+                            MeterRegistry meterRegistry) {
         this.schemaDirectory = schemaDirectory;
+        this.maxCachedSchemas = maxCachedSchemas;
+        this.meterRegistry = meterRegistry;
         // Ensure the schema directory exists
         try {
             Files.createDirectories(Paths.get(schemaDirectory));
@@ -41,9 +62,69 @@ public class JwtSchemaService {
         }
     }
 
+    @PostConstruct
+    public void init() {
+        watchSchemaDirectory();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Failed to close schema directory watcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void watchSchemaDirectory() {
+        try {
+            Path path = Paths.get(schemaDirectory);
+            watchService = FileSystems.getDefault().newWatchService();
+            path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            Thread watcher = new Thread(() -> {
+                try {
+                    WatchKey key;
+                    while ((key = watchService.take()) != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                                invalidateAll();
+                                continue;
+                            }
+                            String fileName = event.context().toString();
+                            if (fileName.endsWith(".json")) {
+                                String schemaName = fileName.substring(0, fileName.length() - ".json".length());
+                                log.info("Schema file {} changed ({}).", fileName, event.kind().name());
+                                invalidateIfChanged(schemaName);
+                            }
+                        }
+                        key.reset();
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    log.info("Schema directory watcher stopped.");
+                }
+            }, "jwt-schema-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            log.info("Watching schema directory for changes: {}", schemaDirectory);
+        } catch (IOException e) {
+            log.error("Failed to set up schema directory watcher: {}", e.getMessage());
+        }
+    }
+
     public void saveSchema(String schemaName, String schemaContent) throws IOException {
         Path schemaPath = Paths.get(schemaDirectory, schemaName + ".json");
         Files.writeString(schemaPath, schemaContent);
+        CompiledSchema cached = compiledSchemas.get(schemaName);
+        if (cached == null || !cached.contentHash.equals(contentHash(schemaContent))) {
+            invalidate(schemaName);
+        } else {
+            // Unchanged content keeps its entry, but compilations already under way may have read an older file
+            cacheGeneration.incrementAndGet();
+        }
         log.info("Schema '{}' saved to {}", schemaName, schemaPath);
     }
 
@@ -73,25 +154,116 @@ public class JwtSchemaService {
             throw new IOException("Schema '" + schemaName + "' not found.");
         }
         Files.delete(schemaPath);
+        invalidate(schemaName);
         log.info("Schema '{}' deleted from {}", schemaName, schemaPath);
     }
 
     public ValidationResponse verifyClaimsWithSchema(String schemaName, Map<String, Object> claims) throws IOException {
+        JsonNode jsonClaims = objectMapper.valueToTree(claims);
+        return verifyClaimsWithSchema(schemaName, jsonClaims);
+    }
+
+    public ValidationResponse verifyClaimsWithSchema(String schemaName, JsonNode jsonClaims) throws IOException {
+        long start = System.nanoTime();
+        String outcome = ServiceMetrics.ERROR;
+        try {
+            JsonSchema jsonSchema = getCompiledSchema(schemaName);
+            Set<ValidationMessage> validationMessages = jsonSchema.validate(jsonClaims);
+
+            if (validationMessages.isEmpty()) {
+                outcome = ServiceMetrics.SUCCESS;
+                return new ValidationResponse(true, "Claims successfully validated against schema '" + schemaName + "'.");
+            } else {
+                outcome = ServiceMetrics.INVALID;
+                List<String> errors = validationMessages.stream()
+                               .map(ValidationMessage::getMessage)
+                               .collect(Collectors.toList());
+                return new ValidationResponse(false, "Claims validation failed against schema '" + schemaName + "'.", errors);
+            }
+        } catch (IOException e) {
+            outcome = ServiceMetrics.NOT_FOUND;
+            throw e;
+        } finally {
+            ServiceMetrics.record(meterRegistry, ServiceMetrics.SCHEMA_VALIDATE, outcome, System.nanoTime() - start);
+        }
+    }
+
+    public JsonSchema getCompiledSchema(String schemaName) throws IOException {
+        CompiledSchema cached = compiledSchemas.get(schemaName);
+        if (cached != null) {
+            cached.lastAccess = accessClock.incrementAndGet();
+            return cached.schema;
+        }
+
+        long generation = cacheGeneration.get();
         String schemaContent = getSchema(schemaName);
-        JsonSchemaFactory factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V202012);
-        JsonSchema jsonSchema = factory.getSchema(schemaContent);
+        CompiledSchema compiled = new CompiledSchema(contentHash(schemaContent), schemaFactory.getSchema(schemaContent));
+        compiled.lastAccess = accessClock.incrementAndGet();
+        // invalidate() bumps the generation before removing, so a store that passes this check is removed after it
+        CompiledSchema stored = compiledSchemas.compute(schemaName,
+                (name, existing) -> cacheGeneration.get() == generation ? compiled : existing);
+        if (stored == compiled) {
+            evictIfNeeded();
+        }
+        return compiled.schema;
+    }
 
-        JsonNode jsonClaims = objectMapper.valueToTree(claims);
-        Set<ValidationMessage> validationMessages = jsonSchema.validate(jsonClaims);
+    private void evictIfNeeded() {
+        while (compiledSchemas.size() > maxCachedSchemas) {
+            compiledSchemas.entrySet().stream()
+                    .min((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess))
+                    .ifPresent(eldest -> compiledSchemas.remove(eldest.getKey(), eldest.getValue()));
+        }
+    }
 
-        if (validationMessages.isEmpty()) {
-            return new ValidationResponse(true, "Claims successfully validated against schema '" + schemaName + "'.");
-        } else {
-            List<String> errors = validationMessages.stream()
-                           .map(ValidationMessage::getMessage)
-                           .collect(Collectors.toList());
-            return new ValidationResponse(false, "Claims validation failed against schema '" + schemaName + "'.", errors);
+    private void invalidate(String schemaName) {
+        cacheGeneration.incrementAndGet();
+        CompiledSchema removed = compiledSchemas.remove(schemaName);
+        if (removed != null) {
+            log.debug("Compiled schema '{}' (sha256 {}) evicted.", schemaName, removed.contentHash);
         }
     }
-}
 
+    // Edits that leave the content unchanged (touch, our own saveSchema) keep the compiled schema. The generation is
+    // bumped regardless, so a compilation that read the file before this change is not stored.
+    private void invalidateIfChanged(String schemaName) {
+        cacheGeneration.incrementAndGet();
+        CompiledSchema cached = compiledSchemas.get(schemaName);
+        if (cached == null) {
+            return;
+        }
+        try {
+            if (cached.contentHash.equals(contentHash(getSchema(schemaName)))) {
+                return;
+            }
+        } catch (IOException e) {
+            // Deleted or unreadable: fall through and drop the entry
+        }
+        invalidate(schemaName);
+    }
+
+    void invalidateAll() {
+        cacheGeneration.incrementAndGet();
+        compiledSchemas.clear();
+    }
+
+    private static String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class CompiledSchema {
+        private final String contentHash;
+        private final JsonSchema schema;
+        private volatile long lastAccess;
+
+        CompiledSchema(String contentHash, JsonSchema schema) {
+            this.contentHash = contentHash;
+            this.schema = schema;
+        }
+    }
+}
@@ -5,9 +5,19 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Column;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_jwt_sign_history_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_jwt_sign_history_success_id", columnList = "success, id"),
+        @Index(name = "idx_jwt_sign_history_common_name_id", columnList = "common_name, id"),
+        @Index(name = "idx_jwt_sign_history_header_hash", columnList = "header_hash"),
+        @Index(name = "idx_jwt_sign_history_payload_hash", columnList = "payload_hash"),
+        @Index(name = "idx_jwt_sign_history_original_hash", columnList = "original_hash")
+})
 public class JwtSignHistory {
 
     @Id
@@ -17,6 +27,9 @@ public class JwtSignHistory {
     private LocalDateTime timestamp;
     private boolean success;
 
+    @Column(name = "common_name")
+    private String commonName;
+
     @Column(length = 1000) // Adjust length as needed
     private String failureReason;
 
@@ -26,6 +39,19 @@ public class JwtSignHistory {
     @Column(length = 2000) // Adjust length as needed
     private String signedJwtResult;
 
+    // Compressed form written by JwtSignHistoryRepositoryImpl: jwt_payload hashes of the JWS header and claims and of the
+    // original claims, plus the raw signature. Rows written before compression keep the two plain columns above.
+    @Column(name = "header_hash", length = 43)
+    private String headerHash;
+
+    @Column(name = "payload_hash", length = 43)
+    private String payloadHash;
+
+    @Column(name = "original_hash", length = 43)
+    private String originalHash;
+
+    private byte[] signature;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -51,6 +77,14 @@ public class JwtSignHistory {
         this.success = success;
     }
 
+    public String getCommonName() {
+        return commonName;
+    }
+
+    public void setCommonName(String commonName) {
+        this.commonName = commonName;
+    }
+
     public String getFailureReason() {
         return failureReason;
     }
@@ -0,0 +1,165 @@
+package org.license;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+// Writes sign history straight from the database cursor to an output stream, one row at a time
+@Service
+public class JwtSignHistoryExporter {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format fromString(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+
+    private final JwtSignHistoryStore jwtSignHistoryStore;
+    private final ObjectWriter jsonWriter;
+
+    @Value("${jwt.history.export.fetch-size:500}")
+    private int fetchSize;
+
+    // Rows read per cursor; the cursor is reopened after the last id so no single read holds SQLite's lock for long
+    @Value("${jwt.history.export.segment-size:10000}")
+    private int segmentSize;
+
+    public JwtSignHistoryExporter(JwtSignHistoryStore jwtSignHistoryStore, ObjectMapper objectMapper) {
+        this.jwtSignHistoryStore = jwtSignHistoryStore;
+        this.jsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    // Returns the number of rows written. The query's limit is ignored; 'after' resumes an interrupted export.
+    public long export(JwtSignHistoryQuery query, Format format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+        long rows;
+        if (format == Format.CSV) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 8192);
+            rows = exportCsv(query, writer);
+            writer.flush();
+        } else {
+            JsonGenerator generator = jsonWriter.getFactory().createGenerator(target);
+            generator.setRootValueSeparator(null);
+            rows = exportNdjson(query, generator);
+            generator.flush();
+        }
+        if (target instanceof GZIPOutputStream gzipOut) {
+            gzipOut.finish();
+        }
+        return rows;
+    }
+
+    private long exportNdjson(JwtSignHistoryQuery query, JsonGenerator generator) throws IOException {
+        return streamAll(query, history -> {
+            jsonWriter.writeValue(generator, history);
+            generator.writeRaw('\n');
+        });
+    }
+
+    private long exportCsv(JwtSignHistoryQuery query, Writer writer) throws IOException {
+        boolean includeJwt = query.isIncludeJwt();
+        writer.write(includeJwt
+                ? "id,timestamp,success,commonName,failureReason,originalJwt,signedJwtResult\n"
+                : "id,timestamp,success,commonName,failureReason\n");
+        return streamAll(query, history -> {
+            writer.write(String.valueOf(history.getId()));
+            writer.write(',');
+            writer.write(history.getTimestamp() == null ? "" : history.getTimestamp().toString());
+            writer.write(',');
+            writer.write(String.valueOf(history.isSuccess()));
+            writer.write(',');
+            writeCsvField(writer, history.getCommonName());
+            writer.write(',');
+            writeCsvField(writer, history.getFailureReason());
+            if (includeJwt) {
+                writer.write(',');
+                writeCsvField(writer, history.getOriginalJwt());
+                writer.write(',');
+                writeCsvField(writer, history.getSignedJwtResult());
+            }
+            writer.write('\n');
+        });
+    }
+
+    private long streamAll(JwtSignHistoryQuery query, RowWriter sink) throws IOException {
+        long total = 0;
+        Long[] lastId = {query.getAfter()};
+        try {
+            while (true) {
+                query.setAfter(lastId[0]);
+                int rows = jwtSignHistoryStore.streamRows(query, segmentSize, fetchSize, history -> {
+                    try {
+                        sink.write(history);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lastId[0] = history.getId();
+                });
+                total += rows;
+                if (rows < segmentSize) {
+                    return total;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    public static String fileName(Format format, boolean gzip) {
+        return "jwt-sign-history." + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(JwtSignHistory history) throws IOException;
+    }
+}
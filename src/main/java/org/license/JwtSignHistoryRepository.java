@@ -2,5 +2,5 @@ package org.license;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface JwtSignHistoryRepository extends JpaRepository<JwtSignHistory, Long> {
+public interface JwtSignHistoryRepository extends JpaRepository<JwtSignHistory, Long>, JwtSignHistoryRepositoryCustom {
 }
@@ -0,0 +1,34 @@
+package org.license;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface JwtSignHistoryRepositoryCustom {
+
+    void insertBatch(List<JwtSignHistory> histories);
+
+    // Inserts one row and sets its generated id
+    JwtSignHistory insert(JwtSignHistory history);
+
+    // Keyset page ordered by id; returns up to limit + 1 rows so callers can tell whether more follow
+    List<JwtSignHistory> findPage(JwtSignHistoryQuery query);
+
+    // Streams up to maxRows matching rows in id order through a forward-only cursor; returns the number of rows seen
+    int streamRows(JwtSignHistoryQuery query, int maxRows, int fetchSize, Consumer<JwtSignHistory> consumer);
+
+    // Id of the row at the given position counting back from the newest (0 = newest), or null
+    Long findIdFromNewest(long offset);
+
+    // Smallest id whose timestamp is at or after the cutoff, or null
+    Long findFirstIdSince(LocalDateTime cutoff);
+
+    Long findMinId();
+
+    Long findMaxId();
+
+    int deleteWithIdBelow(long id);
+
+    // Also drops payloads no other row references; returns false when no row has the id
+    boolean deleteRow(long id);
+}
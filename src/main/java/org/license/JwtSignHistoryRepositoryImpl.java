@@ -0,0 +1,321 @@
+package org.license;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class JwtSignHistoryRepositoryImpl implements JwtSignHistoryRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO jwt_sign_history (timestamp, success, common_name, failure_reason, "
+            + "header_hash, payload_hash, signature, original_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_PAYLOAD_SQL =
+            "INSERT OR IGNORE INTO jwt_payload (hash, dictionary_id, raw_length, data) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_PAYLOAD_SQL = "DELETE FROM jwt_payload WHERE hash = ?"
+            + " AND NOT EXISTS (SELECT 1 FROM jwt_sign_history WHERE header_hash = ?)"
+            + " AND NOT EXISTS (SELECT 1 FROM jwt_sign_history WHERE payload_hash = ?)"
+            + " AND NOT EXISTS (SELECT 1 FROM jwt_sign_history WHERE original_hash = ?)";
+    // Keeps IN lists well under SQLite's bound parameter limit
+    private static final int HASH_LOOKUP_CHUNK = 500;
+
+    private static final String SUMMARY_COLUMNS = "id, timestamp, success, common_name, failure_reason";
+    // Payload bodies are only joined in, and later decompressed, when a caller asks for the JWTs
+    private static final String FULL_COLUMNS = SUMMARY_COLUMNS + ", original_jwt, signed_jwt_result, header_hash, signature, "
+            + "hp.dictionary_id AS header_dictionary, hp.raw_length AS header_length, hp.data AS header_data, "
+            + "pp.dictionary_id AS payload_dictionary, pp.raw_length AS payload_length, pp.data AS payload_data, "
+            + "op.dictionary_id AS original_dictionary, op.raw_length AS original_length, op.data AS original_data";
+    private static final String FULL_FROM = " FROM jwt_sign_history"
+            + " LEFT JOIN jwt_payload hp ON hp.hash = header_hash"
+            + " LEFT JOIN jwt_payload pp ON pp.hash = payload_hash"
+            + " LEFT JOIN jwt_payload op ON op.hash = original_hash";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JwtPayloadCodec jwtPayloadCodec;
+
+    public JwtSignHistoryRepositoryImpl(JdbcTemplate jdbcTemplate, JwtPayloadCodec jwtPayloadCodec) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jwtPayloadCodec = jwtPayloadCodec;
+    }
+
+    // One JDBC batch in a single transaction instead of one SQLite commit per row. Headers and claims are stored once per
+    // distinct hash; only hashes not already in jwt_payload are compressed.
+    @Override
+    @Transactional
+    public void insertBatch(List<JwtSignHistory> histories) {
+        if (histories.isEmpty()) {
+            return;
+        }
+        List<EncodedRow> rows = new ArrayList<>(histories.size());
+        Map<String, byte[]> payloads = new LinkedHashMap<>();
+        long logicalBytes = 0;
+        long signatureBytes = 0;
+        int references = 0;
+        for (JwtSignHistory history : histories) {
+            EncodedRow row = encode(history, payloads);
+            rows.add(row);
+            logicalBytes += length(history.getSignedJwtResult()) + length(history.getOriginalJwt());
+            signatureBytes += row.signature == null ? 0 : row.signature.length;
+            references += row.references();
+        }
+
+        payloads.keySet().removeAll(findExistingHashes(payloads.keySet()));
+        List<Object[]> payloadRows = new ArrayList<>(payloads.size());
+        long compressedBytes = 0;
+        for (Map.Entry<String, byte[]> payload : payloads.entrySet()) {
+            JwtPayloadCodec.Compressed compressed = jwtPayloadCodec.compress(payload.getValue());
+            payloadRows.add(new Object[]{payload.getKey(), compressed.getDictionaryId(), payload.getValue().length, compressed.getData()});
+            compressedBytes += compressed.getData().length;
+        }
+        if (!payloadRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PAYLOAD_SQL, payloadRows);
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> setInsertValues(ps, row));
+        jwtPayloadCodec.recordWrite(rows.size(), logicalBytes, compressedBytes + signatureBytes, payloadRows.size(),
+                references - payloadRows.size());
+    }
+
+    @Override
+    @Transactional
+    public JwtSignHistory insert(JwtSignHistory history) {
+        insertBatch(List.of(history));
+        history.setId(jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class));
+        return history;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<JwtSignHistory> findPage(JwtSignHistoryQuery query) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(query.isIncludeJwt() ? FULL_COLUMNS + FULL_FROM : SUMMARY_COLUMNS + " FROM jwt_sign_history");
+        appendFilters(sql, args, query);
+        sql.append(" ORDER BY id LIMIT ?");
+        args.add(query.getLimit() + 1);
+        return jdbcTemplate.query(sql.toString(), rowMapper(query.isIncludeJwt()), args.toArray());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int streamRows(JwtSignHistoryQuery query, int maxRows, int fetchSize, Consumer<JwtSignHistory> consumer) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(query.isIncludeJwt() ? FULL_COLUMNS + FULL_FROM : SUMMARY_COLUMNS + " FROM jwt_sign_history");
+        appendFilters(sql, args, query);
+        sql.append(" ORDER BY id LIMIT ?");
+        args.add(maxRows);
+
+        RowMapper<JwtSignHistory> mapper = rowMapper(query.isIncludeJwt());
+        int[] rowCount = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+            return ps;
+        }, rs -> {
+            consumer.accept(mapper.mapRow(rs, rowCount[0]++));
+        });
+        return rowCount[0];
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long findIdFromNewest(long offset) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM jwt_sign_history ORDER BY id DESC LIMIT 1 OFFSET ?", Long.class, offset);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long findFirstIdSince(LocalDateTime cutoff) {
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM jwt_sign_history WHERE timestamp >= ?", Long.class, Timestamp.valueOf(cutoff));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long findMinId() {
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM jwt_sign_history", Long.class);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long findMaxId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM jwt_sign_history", Long.class);
+    }
+
+    @Override
+    @Transactional
+    public int deleteWithIdBelow(long id) {
+        return deleteRows("id < ?", id);
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteRow(long id) {
+        return deleteRows("id = ?", id) > 0;
+    }
+
+    // Deletes the rows, then whichever of their payloads no remaining row references
+    private int deleteRows(String condition, long id) {
+        List<String> hashes = jdbcTemplate.queryForList("SELECT header_hash FROM jwt_sign_history WHERE " + condition
+                + " UNION SELECT payload_hash FROM jwt_sign_history WHERE " + condition
+                + " UNION SELECT original_hash FROM jwt_sign_history WHERE " + condition, String.class, id, id, id);
+        int deleted = jdbcTemplate.update("DELETE FROM jwt_sign_history WHERE " + condition, id);
+        List<Object[]> candidates = hashes.stream()
+                .filter(Objects::nonNull)
+                .map(hash -> new Object[]{hash, hash, hash, hash})
+                .toList();
+        if (!candidates.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_PAYLOAD_SQL, candidates);
+        }
+        return deleted;
+    }
+
+    private Set<String> findExistingHashes(Collection<String> hashes) {
+        Set<String> existing = new HashSet<>();
+        List<String> all = new ArrayList<>(hashes);
+        for (int from = 0; from < all.size(); from += HASH_LOOKUP_CHUNK) {
+            List<String> chunk = all.subList(from, Math.min(all.size(), from + HASH_LOOKUP_CHUNK));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            existing.addAll(jdbcTemplate.queryForList("SELECT hash FROM jwt_payload WHERE hash IN (" + placeholders + ")",
+                    String.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    // Splits the signed JWT into header, claims and signature; text that is not a canonical compact JWS is kept whole
+    private static EncodedRow encode(JwtSignHistory history, Map<String, byte[]> payloads) {
+        EncodedRow row = new EncodedRow(history);
+        String signedJwt = history.getSignedJwtResult();
+        JwtPayloadCodec.CompactJws jws = JwtPayloadCodec.split(signedJwt);
+        if (jws != null) {
+            row.headerHash = addPayload(payloads, jws.getHeader());
+            row.payloadHash = addPayload(payloads, jws.getPayload());
+            row.signature = jws.getSignature();
+        } else if (signedJwt != null) {
+            row.payloadHash = addPayload(payloads, signedJwt.getBytes(StandardCharsets.UTF_8));
+        }
+        if (history.getOriginalJwt() != null) {
+            row.originalHash = addPayload(payloads, history.getOriginalJwt().getBytes(StandardCharsets.UTF_8));
+        }
+        return row;
+    }
+
+    private static String addPayload(Map<String, byte[]> payloads, byte[] raw) {
+        String hash = JwtPayloadCodec.hash(raw);
+        payloads.putIfAbsent(hash, raw);
+        return hash;
+    }
+
+    private static void setInsertValues(PreparedStatement ps, EncodedRow row) throws SQLException {
+        JwtSignHistory history = row.history;
+        ps.setTimestamp(1, Timestamp.valueOf(history.getTimestamp()));
+        ps.setBoolean(2, history.isSuccess());
+        ps.setString(3, history.getCommonName());
+        ps.setString(4, history.getFailureReason());
+        ps.setString(5, row.headerHash);
+        ps.setString(6, row.payloadHash);
+        ps.setBytes(7, row.signature);
+        ps.setString(8, row.originalHash);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    static void appendFilters(StringBuilder sql, List<Object> args, JwtSignHistoryQuery query) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getAfter() != null) {
+            conditions.add("id > ?");
+            args.add(query.getAfter());
+        }
+        if (query.getFrom() != null) {
+            conditions.add("timestamp >= ?");
+            args.add(Timestamp.valueOf(query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            conditions.add("timestamp < ?");
+            args.add(Timestamp.valueOf(query.getTo()));
+        }
+        if (query.getSuccess() != null) {
+            conditions.add("success = ?");
+            args.add(query.getSuccess());
+        }
+        if (query.getCommonName() != null) {
+            conditions.add("common_name = ?");
+            args.add(query.getCommonName());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    RowMapper<JwtSignHistory> rowMapper(boolean includeJwt) {
+        return (rs, rowNum) -> {
+            JwtSignHistory history = new JwtSignHistory();
+            history.setId(rs.getLong("id"));
+            Timestamp timestamp = rs.getTimestamp("timestamp");
+            history.setTimestamp(timestamp == null ? null : timestamp.toLocalDateTime());
+            history.setSuccess(rs.getBoolean("success"));
+            history.setCommonName(rs.getString("common_name"));
+            history.setFailureReason(rs.getString("failure_reason"));
+            if (includeJwt) {
+                history.setOriginalJwt(rs.getString("original_jwt"));
+                history.setSignedJwtResult(rs.getString("signed_jwt_result"));
+                byte[] original = payload(rs, "original");
+                if (original != null) {
+                    history.setOriginalJwt(new String(original, StandardCharsets.UTF_8));
+                }
+                byte[] payload = payload(rs, "payload");
+                if (payload != null) {
+                    byte[] header = payload(rs, "header");
+                    history.setSignedJwtResult(rs.getString("header_hash") == null
+                            ? new String(payload, StandardCharsets.UTF_8)
+                            : new JwtPayloadCodec.CompactJws(header, payload, rs.getBytes("signature")).toCompact());
+                }
+            }
+            return history;
+        };
+    }
+
+    private byte[] payload(ResultSet rs, String prefix) throws SQLException {
+        byte[] data = rs.getBytes(prefix + "_data");
+        if (data == null) {
+            return null;
+        }
+        return jwtPayloadCodec.decompress(rs.getInt(prefix + "_dictionary"), data, rs.getInt(prefix + "_length"));
+    }
+
+    private static final class EncodedRow {
+        private final JwtSignHistory history;
+        private String headerHash;
+        private String payloadHash;
+        private String originalHash;
+        private byte[] signature;
+
+        private EncodedRow(JwtSignHistory history) {
+            this.history = history;
+        }
+
+        private int references() {
+            return (headerHash == null ? 0 : 1) + (payloadHash == null ? 0 : 1) + (originalHash == null ? 0 : 1);
+        }
+    }
+}
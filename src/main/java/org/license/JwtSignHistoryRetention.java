@@ -0,0 +1,168 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Prunes sign history by row count and age with id-range deletes, independent of the insert paths
+@Service
+public class JwtSignHistoryRetention {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtSignHistoryRetention.class);
+
+    private final JwtSignHistoryStore jwtSignHistoryStore;
+
+    @Value("${jwt.history.max-entries:100}")
+    private long maxEntries;
+
+    @Value("${jwt.history.max-age:0s}")
+    private Duration maxAge;
+
+    @Value("${jwt.history.retention.chunk-size:5000}")
+    private long chunkSize;
+
+    @Value("${jwt.history.retention.max-chunks-per-run:100}")
+    private int maxChunksPerRun;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalRowsPruned = new AtomicLong();
+    private volatile long lastRunRowsPruned;
+    private volatile long lastRunMillis;
+    private volatile LocalDateTime lastRunAt;
+
+    public JwtSignHistoryRetention(JwtSignHistoryStore jwtSignHistoryStore) {
+        this.jwtSignHistoryStore = jwtSignHistoryStore;
+    }
+
+    @Scheduled(initialDelayString = "${jwt.history.retention.interval-ms:60000}", fixedDelayString = "${jwt.history.retention.interval-ms:60000}")
+    public void scheduledRun() {
+        try {
+            runRetention();
+        } catch (Exception e) {
+            log.error("Sign history retention run failed: {}", e.getMessage());
+        }
+    }
+
+    public long runRetention() {
+        if (!runLock.tryLock()) {
+            return 0;
+        }
+        try {
+            long start = System.nanoTime();
+            Long cutoffId = findCutoffId();
+            long pruned = 0;
+            if (cutoffId != null) {
+                pruned = deleteBelow(cutoffId);
+            }
+
+            lastRunRowsPruned = pruned;
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            lastRunAt = LocalDateTime.now();
+            runs.incrementAndGet();
+            totalRowsPruned.addAndGet(pruned);
+            if (pruned > 0) {
+                log.info("Sign history retention pruned {} rows in {} ms.", pruned, lastRunMillis);
+            }
+            return pruned;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    // Every row with an id below the returned value falls outside the count or age limit
+    private Long findCutoffId() {
+        Long cutoffId = null;
+        if (maxEntries > 0) {
+            Long oldestKept = jwtSignHistoryStore.findIdFromNewest(maxEntries - 1);
+            cutoffId = oldestKept;
+        }
+        if (maxAge != null && !maxAge.isZero() && !maxAge.isNegative()) {
+            Long firstRecent = jwtSignHistoryStore.findFirstIdSince(LocalDateTime.now().minus(maxAge));
+            if (firstRecent == null) {
+                Long maxId = jwtSignHistoryStore.findMaxId();
+                firstRecent = maxId == null ? null : maxId + 1;
+            }
+            if (firstRecent != null && (cutoffId == null || firstRecent > cutoffId)) {
+                cutoffId = firstRecent;
+            }
+        }
+        return cutoffId;
+    }
+
+    // Deletes in bounded id ranges so one run never holds the SQLite write lock for long
+    private long deleteBelow(long cutoffId) {
+        Long minId = jwtSignHistoryStore.findMinId();
+        if (minId == null || minId >= cutoffId) {
+            return 0;
+        }
+        long pruned = 0;
+        long boundary = minId;
+        for (int chunk = 0; chunk < maxChunksPerRun && boundary < cutoffId; chunk++) {
+            boundary = Math.min(cutoffId, boundary + chunkSize);
+            pruned += jwtSignHistoryStore.deleteWithIdBelow(boundary);
+        }
+        return pruned;
+    }
+
+    public RetentionStats getStats() {
+        return new RetentionStats(maxEntries, maxAge.toString(), runs.get(), totalRowsPruned.get(),
+                lastRunRowsPruned, lastRunMillis, lastRunAt);
+    }
+
+    public static class RetentionStats {
+        private final long maxEntries;
+        private final String maxAge;
+        private final long runs;
+        private final long totalRowsPruned;
+        private final long lastRunRowsPruned;
+        private final long lastRunMillis;
+        private final LocalDateTime lastRunAt;
+
+        public RetentionStats(long maxEntries, String maxAge, long runs, long totalRowsPruned,
+                              long lastRunRowsPruned, long lastRunMillis, LocalDateTime lastRunAt) {
+            this.maxEntries = maxEntries;
+            this.maxAge = maxAge;
+            this.runs = runs;
+            this.totalRowsPruned = totalRowsPruned;
+            this.lastRunRowsPruned = lastRunRowsPruned;
+            this.lastRunMillis = lastRunMillis;
+            this.lastRunAt = lastRunAt;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public String getMaxAge() {
+            return maxAge;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public long getTotalRowsPruned() {
+            return totalRowsPruned;
+        }
+
+        public long getLastRunRowsPruned() {
+            return lastRunRowsPruned;
+        }
+
+        public long getLastRunMillis() {
+            return lastRunMillis;
+        }
+
+        public LocalDateTime getLastRunAt() {
+            return lastRunAt;
+        }
+    }
+}
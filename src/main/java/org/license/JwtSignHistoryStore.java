@@ -0,0 +1,43 @@
+package org.license;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Where sign history lives; jwt.history.store selects the SQLite table or the memory-mapped journal
+public interface JwtSignHistoryStore extends Closeable {
+
+    void insertBatch(List<JwtSignHistory> histories);
+
+    JwtSignHistory save(JwtSignHistory history);
+
+    // Returns false when no row has the id
+    boolean deleteById(long id);
+
+    long count();
+
+    // Keyset page ordered by id; returns up to limit + 1 rows so callers can tell whether more follow
+    List<JwtSignHistory> findPage(JwtSignHistoryQuery query);
+
+    // Streams up to maxRows matching rows in id order; returns the number of rows seen
+    int streamRows(JwtSignHistoryQuery query, int maxRows, int fetchSize, Consumer<JwtSignHistory> consumer);
+
+    // Id of the row at the given position counting back from the newest (0 = newest), or null
+    Long findIdFromNewest(long offset);
+
+    // Smallest id whose timestamp is at or after the cutoff, or null
+    Long findFirstIdSince(LocalDateTime cutoff);
+
+    Long findMinId();
+
+    Long findMaxId();
+
+    // Backends may delete less than asked (the journal only drops whole segments); returns the rows removed
+    int deleteWithIdBelow(long id);
+
+    @Override
+    default void close() throws IOException {
+    }
+}
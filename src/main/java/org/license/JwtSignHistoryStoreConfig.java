@@ -0,0 +1,27 @@
+package org.license;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class JwtSignHistoryStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public JwtSignHistoryStore jwtSignHistoryStore(@Value("${jwt.history.store:sqlite}") String type,
+                                                   JwtSignHistoryRepository jwtSignHistoryRepository,
+                                                   JwtPayloadCodec jwtPayloadCodec,
+                                                   @Value("${jwt.history.journal.directory:db/journal}") String directory,
+                                                   @Value("${jwt.history.journal.segment-size:64MB}") DataSize segmentSize,
+                                                   @Value("${jwt.history.journal.index-interval:256}") int indexInterval) throws IOException {
+        return switch (type.toLowerCase()) {
+            case "sqlite" -> new SqliteJwtSignHistoryStore(jwtSignHistoryRepository, jwtPayloadCodec);
+            case "journal" -> JournalJwtSignHistoryStore.open(Paths.get(directory), segmentSize.toBytes(), indexInterval);
+            default -> throw new IllegalArgumentException("Unknown sign history store: " + type + " (expected sqlite or journal)");
+        };
+    }
+}
@@ -0,0 +1,323 @@
+package org.license;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class JwtSignHistoryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtSignHistoryWriter.class);
+
+    public enum BackpressurePolicy {
+        BLOCK, DROP_OLDEST, FAIL
+    }
+
+    private final JwtSignHistoryStore jwtSignHistoryStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.history.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${jwt.history.writer.batch-size:500}")
+    private int batchSize;
+
+    @Value("${jwt.history.writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${jwt.history.writer.backpressure:BLOCK}")
+    private BackpressurePolicy backpressurePolicy;
+
+    @Value("${jwt.history.writer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<JwtSignHistory> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    public JwtSignHistoryWriter(JwtSignHistoryStore jwtSignHistoryStore, MeterRegistry meterRegistry) {
+        this.jwtSignHistoryStore = jwtSignHistoryStore;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("jwt.history.queue.depth", this, writer -> writer.queue == null ? 0 : writer.queue.size())
+                .description("Sign history rows waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "jwt-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Sign history writer started (capacity={}, batchSize={}, flushIntervalMs={}, backpressure={})",
+                queueCapacity, batchSize, flushIntervalMs, backpressurePolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Sign history writer stopped with {} rows still queued.", queue.size());
+        } else {
+            log.info("Sign history writer drained and stopped.");
+        }
+    }
+
+    public void enqueue(JwtSignHistory history) {
+        // The writer thread is gone after shutdown, so anything queued now would never be written
+        if (!running) {
+            rejectStopped();
+        }
+        switch (backpressurePolicy) {
+            case BLOCK -> {
+                try {
+                    // Waits in slices so a shutdown while the queue is full releases the caller
+                    while (!queue.offer(history, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            rejectStopped();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejected.incrementAndGet();
+                    throw new QueueFullException("Interrupted while waiting for space in the sign history queue.");
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(history)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            case FAIL -> {
+                if (!queue.offer(history)) {
+                    rejected.incrementAndGet();
+                    throw new QueueFullException("Sign history queue is full (" + queueCapacity + " rows).");
+                }
+            }
+        }
+        // Shutdown may have drained the queue between the check above and the offer; a row the writer will never
+        // see is taken back. If it is already gone, the writer thread took it before exiting.
+        if (!running && queue.remove(history)) {
+            rejectStopped();
+        }
+        accepted.incrementAndGet();
+    }
+
+    private void rejectStopped() {
+        rejected.incrementAndGet();
+        throw new QueueFullException("Sign history writer is stopped.");
+    }
+
+    // Whether rows can currently be queued without being rejected; only FAIL rejects on a full queue
+    public boolean canAccept(int rows) {
+        return running && (backpressurePolicy != BackpressurePolicy.FAIL || queue.remainingCapacity() >= rows);
+    }
+
+    public void enqueueAll(List<JwtSignHistory> histories) {
+        for (JwtSignHistory history : histories) {
+            enqueue(history);
+        }
+    }
+
+    // Waits until every row accepted so far has been written, failed or dropped
+    public boolean awaitDrained(long timeoutMs) throws InterruptedException {
+        long target = accepted.get();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (written.get() + failed.get() + dropped.get() < target) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<JwtSignHistory> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JwtSignHistory first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Fill the batch until it is full or the flush interval has elapsed
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                queue.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    JwtSignHistory next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                log.info("Sign history writer interrupted; draining remaining rows.");
+                running = false;
+                queue.drainTo(batch);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<JwtSignHistory> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        String outcome = ServiceMetrics.SUCCESS;
+        try {
+            jwtSignHistoryStore.insertBatch(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            outcome = ServiceMetrics.ERROR;
+            failed.addAndGet(batch.size());
+            log.error("Failed to write {} sign history rows: {}", batch.size(), e.getMessage());
+        }
+        long elapsed = System.nanoTime() - start;
+        ServiceMetrics.record(meterRegistry, ServiceMetrics.HISTORY_WRITE, outcome, elapsed);
+        lastFlushNanos = elapsed;
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        flushes.incrementAndGet();
+    }
+
+    public WriterStats getStats() {
+        long flushCount = flushes.get();
+        return new WriterStats(
+                queue.size(),
+                queueCapacity,
+                backpressurePolicy.name(),
+                accepted.get(),
+                written.get(),
+                dropped.get(),
+                rejected.get(),
+                failed.get(),
+                flushCount,
+                lastFlushNanos / 1_000_000.0,
+                flushCount == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / flushCount,
+                maxFlushNanos.get() / 1_000_000.0);
+    }
+
+    public static class QueueFullException extends RuntimeException {
+        public QueueFullException(String message) {
+            super(message);
+        }
+    }
+
+    public static class WriterStats {
+        private final int queueDepth;
+        private final int queueCapacity;
+        private final String backpressurePolicy;
+        private final long accepted;
+        private final long written;
+        private final long dropped;
+        private final long rejected;
+        private final long failed;
+        private final long flushes;
+        private final double lastFlushMillis;
+        private final double avgFlushMillis;
+        private final double maxFlushMillis;
+
+        public WriterStats(int queueDepth, int queueCapacity, String backpressurePolicy, long accepted, long written,
+                           long dropped, long rejected, long failed, long flushes,
+                           double lastFlushMillis, double avgFlushMillis, double maxFlushMillis) {
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.backpressurePolicy = backpressurePolicy;
+            this.accepted = accepted;
+            this.written = written;
+            this.dropped = dropped;
+            this.rejected = rejected;
+            this.failed = failed;
+            this.flushes = flushes;
+            this.lastFlushMillis = lastFlushMillis;
+            this.avgFlushMillis = avgFlushMillis;
+            this.maxFlushMillis = maxFlushMillis;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public String getBackpressurePolicy() {
+            return backpressurePolicy;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public double getLastFlushMillis() {
+            return lastFlushMillis;
+        }
+
+        public double getAvgFlushMillis() {
+            return avgFlushMillis;
+        }
+
+        public double getMaxFlushMillis() {
+            return maxFlushMillis;
+        }
+    }
+}
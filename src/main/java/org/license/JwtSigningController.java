@@ -1,46 +1,199 @@
 package org.license;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 @RequestMapping("/jwt")
 public class JwtSigningController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    static final String HISTORY_ERROR = "X-History-Error";
+
+    private static final Logger log = LoggerFactory.getLogger(JwtSigningController.class);
+
     private final JwtSigningService jwtSigningService;
-    private final JwtSignHistoryRepository jwtSignHistoryRepository;
+    private final JwtSignHistoryWriter jwtSignHistoryWriter;
+    private final JwtSchemaService jwtSchemaService;
 
-    public JwtSigningController(JwtSigningService jwtSigningService, JwtSignHistoryRepository jwtSignHistoryRepository) {
+    @Value("${jwt.sign.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    public JwtSigningController(JwtSigningService jwtSigningService, JwtSignHistoryWriter jwtSignHistoryWriter, JwtSchemaService jwtSchemaService) {
         this.jwtSigningService = jwtSigningService;
-        this.jwtSignHistoryRepository = jwtSignHistoryRepository;
+        this.jwtSignHistoryWriter = jwtSignHistoryWriter;
+        this.jwtSchemaService = jwtSchemaService;
     }
 
     @PostMapping("/sign")
-    public ResponseEntity<?> signJwt(@RequestBody JwtSignRequest request) {
+    public ResponseEntity<?> signJwt(@RequestBody JwtSignRequest request,
+                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
         JwtSignHistory history = new JwtSignHistory();
-        history.setTimestamp(java.time.LocalDateTime.now());
+        history.setTimestamp(LocalDateTime.now());
+        history.setCommonName(request.getCommonName());
+        ResponseEntity<?> response;
+        SigningResultCache.Result result = null;
         try {
-            String signedJwt = jwtSigningService.signJwt(request.getCommonName(), request.getClaims());
+            result = jwtSigningService.signJwtIdempotent(request.getCommonName(), request.getClaims(), idempotencyKey);
+            if (result.isReplayed()) {
+                // The original request already recorded this token
+                return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(result.getToken());
+            }
             history.setSuccess(true);
-            history.setSignedJwtResult(signedJwt);
-            jwtSignHistoryRepository.save(history);
-            return ResponseEntity.ok(signedJwt);
+            history.setSignedJwtResult(result.getToken());
+            response = ResponseEntity.ok(result.getToken());
         } catch (IllegalArgumentException e) {
             history.setSuccess(false);
             history.setFailureReason(e.getMessage());
-            jwtSignHistoryRepository.save(history);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (IllegalStateException e) {
             history.setSuccess(false);
             history.setFailureReason(e.getMessage());
-            jwtSignHistoryRepository.save(history);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            history.setSuccess(false);
+            history.setFailureReason(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error signing JWT: " + e.getMessage());
+        }
+        // A token only becomes replayable once its history row is accepted, so no retry can obtain an unrecorded token
+        try {
+            jwtSignHistoryWriter.enqueue(history);
+        } catch (RuntimeException e) {
+            if (result != null) {
+                result.discard();
+            }
+            throw e;
+        }
+        if (result != null) {
+            result.commit();
+        }
+        return response;
+    }
+
+    @PostMapping("/sign/validated")
+    public ResponseEntity<?> validateAndSignJwt(@RequestBody JwtValidatedSignRequest request) {
+        JwtSignHistory history = new JwtSignHistory();
+        history.setTimestamp(LocalDateTime.now());
+        history.setCommonName(request.getCommonName());
+        ResponseEntity<?> response;
+        try {
+            if (request.getClaims() == null || !request.getClaims().isObject()) {
+                throw new IllegalStateException("Claims must be a JSON object.");
+            }
+            // The same parsed tree is validated and then serialized as the JWT payload
+            ValidationResponse validation = jwtSchemaService.verifyClaimsWithSchema(request.getSchemaName(), request.getClaims());
+            if (validation.isSuccess()) {
+                String signedJwt = jwtSigningService.signJwt(request.getCommonName(), request.getClaims());
+                history.setSuccess(true);
+                history.setSignedJwtResult(signedJwt);
+                response = ResponseEntity.ok(signedJwt);
+            } else {
+                history.setSuccess(false);
+                history.setFailureReason(validation.getMessage() + " " + validation.getErrors());
+                response = ResponseEntity.status(HttpStatus.BAD_REQUEST).body(validation);
+            }
+        } catch (IOException e) {
+            history.setSuccess(false);
+            history.setFailureReason(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ValidationResponse(false, "Schema not found: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            history.setSuccess(false);
+            history.setFailureReason(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            history.setSuccess(false);
+            history.setFailureReason(e.getMessage());
+            response = ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             history.setSuccess(false);
             history.setFailureReason(e.getMessage());
-            jwtSignHistoryRepository.save(history);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error signing JWT: " + e.getMessage());
+            response = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error signing JWT: " + e.getMessage());
+        }
+        jwtSignHistoryWriter.enqueue(history);
+        return response;
+    }
+
+    // Always 200 for a known certificate; 'valid' tells whether the signature, validity window and schema all passed
+    @PostMapping("/verify")
+    public ResponseEntity<?> verifyJwt(@RequestBody JwtVerifyRequest request) {
+        try {
+            JwtSigningService.VerificationResult result = jwtSigningService.verifyJwt(request.getToken(), request.getCommonName());
+            if (result.isValid() && request.getSchemaName() != null && !request.getSchemaName().isBlank()) {
+                result = result.withSchemaValidation(jwtSchemaService.verifyClaimsWithSchema(request.getSchemaName(), result.getClaims()));
+            }
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ValidationResponse(false, "Schema not found: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error verifying JWT: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/sign/batch")
+    public ResponseEntity<?> signJwtBatch(@RequestBody List<JwtSignRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Batch size " + requests.size() + " exceeds the maximum of " + maxBatchSize + ".");
+        }
+        // Refuse up front rather than sign a batch whose history cannot be recorded
+        if (!jwtSignHistoryWriter.canAccept(requests.size())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Sign history queue cannot take " + requests.size() + " rows.");
+        }
+        try {
+            List<JwtSigningService.BatchSignResult> results = jwtSigningService.signJwtBatch(requests);
+
+            LocalDateTime now = LocalDateTime.now();
+            List<JwtSignHistory> histories = new ArrayList<>(results.size());
+            for (JwtSigningService.BatchSignResult result : results) {
+                JwtSignHistory history = new JwtSignHistory();
+                history.setTimestamp(now);
+                history.setCommonName(result.getCommonName());
+                history.setSuccess(result.isSuccess());
+                history.setSignedJwtResult(result.getSignedJwt());
+                history.setFailureReason(result.getError());
+                histories.add(history);
+            }
+            try {
+                jwtSignHistoryWriter.enqueueAll(histories);
+            } catch (JwtSignHistoryWriter.QueueFullException e) {
+                // The queue filled while signing; the tokens are already issued, so return them and flag the gap
+                log.warn("Sign history for a batch of {} was not fully recorded: {}", histories.size(), e.getMessage());
+                return ResponseEntity.ok().header(HISTORY_ERROR, e.getMessage()).body(results);
+            }
+            return ResponseEntity.ok(results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Batch signing interrupted.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error signing JWT batch: " + e.getMessage());
         }
     }
+
+    @GetMapping("/key-cache/stats")
+    public ResponseEntity<JwtSigningService.KeyCacheStats> getKeyCacheStats() {
+        return ResponseEntity.ok(jwtSigningService.getKeyCacheStats());
+    }
+
+    @GetMapping("/idempotency/stats")
+    public ResponseEntity<SigningResultCache.Stats> getIdempotencyStats() {
+        return ResponseEntity.ok(jwtSigningService.getIdempotencyStats());
+    }
+
+    @ExceptionHandler(JwtSignHistoryWriter.QueueFullException.class)
+    public ResponseEntity<?> handleHistoryQueueFull(JwtSignHistoryWriter.QueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
 }
@@ -1,7 +1,14 @@
 package org.license;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,161 +16,500 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.*;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateException;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class JwtSigningService {
 
     private static final Logger log = LoggerFactory.getLogger(JwtSigningService.class);
 
-    @Value("${generated.keystore.path}")
-    private String generatedKeystorePath;
-
-    @Value("${generated.keystore.password}")
-    private String generatedKeystorePassword;
+    @Value("${jwt.sign.batch.threads:4}")
+    private int batchThreads;
 
     private final CaService caService;
-    private KeyStore generatedCertKeyStore;
+    private final KeyPairPool keyPairPool;
+    private final CertificateStore certificateStore;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile boolean storeLoaded;
+
+    // Readers take the current snapshot without locking; writers serialize on certificateWriteLock
+    // and publish a replacement snapshot in one volatile write
+    private volatile CertificateSnapshot snapshot = CertificateSnapshot.EMPTY;
+    private final ReentrantLock certificateWriteLock = new ReentrantLock();
+    private final AtomicLong keyCacheHits = new AtomicLong();
+    private final AtomicLong keyCacheMisses = new AtomicLong();
+    private volatile JwksDocument jwks;
+
+    @Value("${generated.bulk.threads:0}")
+    private int bulkThreads;
+
+    private ExecutorService batchSigningExecutor;
+    private ExecutorService bulkIssueExecutor;
+
+    @Value("${jwt.sign.idempotency.max-entries:10000}")
+    private int idempotencyMaxEntries;
+
+    @Value("${jwt.sign.idempotency.ttl:10m}")
+    private Duration idempotencyTtl;
+
+    // When off, only requests carrying an Idempotency-Key are deduplicated
+    @Value("${jwt.sign.idempotency.hash-claims:false}")
+    private boolean idempotencyHashClaims;
 
-    public JwtSigningService(CaService caService) {
+    private SigningResultCache signingResultCache;
+
+    public JwtSigningService(CaService caService, KeyPairPool keyPairPool, CertificateStore certificateStore, MeterRegistry meterRegistry) {
         this.caService = caService;
+        this.keyPairPool = keyPairPool;
+        this.certificateStore = certificateStore;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("jwt.certificates.loaded", this, service -> service.snapshot.size())
+                .description("Generated certificates available for signing")
+                .register(meterRegistry);
     }
 
     @PostConstruct
     public void init() {
         Security.addProvider(new BouncyCastleProvider());
+        signingResultCache = new SigningResultCache(idempotencyMaxEntries, idempotencyTtl);
         loadGeneratedCertKeyStore();
+        reloadFromStore();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        batchSigningExecutor = Executors.newFixedThreadPool(batchThreads, r -> {
+            Thread t = new Thread(r, "jwt-batch-sign-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Key generation is CPU-bound, so bulk issuance defaults to one thread per core
+        int issueThreads = bulkThreads > 0 ? bulkThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger issueThreadCount = new AtomicInteger();
+        bulkIssueExecutor = Executors.newFixedThreadPool(issueThreads, r -> {
+            Thread t = new Thread(r, "cert-bulk-issue-" + issueThreadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batchSigningExecutor != null) {
+            batchSigningExecutor.shutdown();
+        }
+        if (bulkIssueExecutor != null) {
+            bulkIssueExecutor.shutdown();
+        }
     }
 
     private void loadGeneratedCertKeyStore() {
         try {
-            generatedCertKeyStore = KeyStore.getInstance("JKS");
-            Path keystorePath = Paths.get(generatedKeystorePath);
+            certificateStore.load();
+            storeLoaded = true;
+        } catch (IOException | GeneralSecurityException e) {
+            log.error("Failed to load or create generated certificates store from {}: {}", certificateStore.getLocation(), e.getMessage());
+            storeLoaded = false;
+        }
+    }
 
-            if (Files.exists(keystorePath)) {
-                try (FileInputStream fis = new FileInputStream(keystorePath.toFile())) {
-                    generatedCertKeyStore.load(fis, generatedKeystorePassword.toCharArray());
-                    log.info("Generated certificates KeyStore loaded successfully from: {}", generatedKeystorePath);
+    // Decodes every key in the store once and publishes the result as the current snapshot
+    void reloadFromStore() {
+        if (!storeLoaded) {
+            return;
+        }
+        certificateWriteLock.lock();
+        try {
+            List<SigningCertificate> certificates = new ArrayList<>();
+            for (String alias : certificateStore.aliases()) {
+                try {
+                    certificates.add(readCertificate(alias));
+                } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                    log.error("Failed to load certificate {} from store: {}", alias, e.getMessage());
                 }
-            } else {
-                generatedCertKeyStore.load(null, generatedKeystorePassword.toCharArray()); // Create new empty keystore
-                log.info("New generated certificates KeyStore created at: {}", generatedKeystorePath);
             }
-        } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException e) {
-            log.error("Failed to load or create generated certificates KeyStore from {}: {}", generatedKeystorePath, e.getMessage());
-            generatedCertKeyStore = null;
+            snapshot = CertificateSnapshot.of(certificates, snapshot.getVersion() + 1);
+            signingResultCache.invalidateAll();
+            log.info("Signing key cache warmed with {} keys.", certificates.size());
+        } finally {
+            certificateWriteLock.unlock();
         }
     }
 
-    private void saveGeneratedCertKeyStore() {
-        try (FileOutputStream fos = new FileOutputStream(Paths.get(generatedKeystorePath).toFile())) {
-            generatedCertKeyStore.store(fos, generatedKeystorePassword.toCharArray());
-            log.info("Generated certificates KeyStore saved to: {}", generatedKeystorePath);
-        } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException e) {
-            log.error("Failed to save generated certificates KeyStore to {}: {}", generatedKeystorePath, e.getMessage());
+    private SigningCertificate readCertificate(String alias) throws IOException, GeneralSecurityException {
+        PrivateKey privateKey = certificateStore.getKey(alias);
+        Certificate[] chain = certificateStore.getCertificateChain(alias);
+        if (privateKey == null || chain == null || chain.length == 0) {
+            throw new KeyStoreException("Entry has no private key or certificate chain");
+        }
+        X509Certificate[] x509Chain = new X509Certificate[chain.length];
+        for (int i = 0; i < chain.length; i++) {
+            x509Chain[i] = (X509Certificate) chain[i];
         }
+        return new SigningCertificate(CertificateSnapshot.normalize(alias), privateKey, KeyType.fromKey(privateKey), x509Chain);
     }
 
     public CertificateInfo generateAndSaveCertificate(String commonName, long validityDays) throws Exception {
+        return generateAndSaveCertificate(commonName, validityDays, KeyType.RSA_2048);
+    }
+
+    public CertificateInfo generateAndSaveCertificate(String commonName, long validityDays, KeyType keyType) throws Exception {
         if (!caService.isCaLoaded()) {
             throw new IllegalStateException("CA is not loaded. Cannot generate certificates.");
         }
-        if (generatedCertKeyStore == null) {
+        if (!storeLoaded) {
             throw new IllegalStateException("Generated certificates KeyStore is not loaded or created.");
         }
 
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA", "BC");
-        keyPairGenerator.initialize(2048);
-        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        SigningCertificate certificate = issue(commonName, validityDays, keyType);
 
-        Date notBefore = new Date();
-        Date notAfter = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(validityDays));
+        // Store the new certificate and private key in the generated KeyStore
+        certificateWriteLock.lock();
+        try {
+            certificateStore.put(commonName, certificate.getPrivateKey(), certificate.getChain());
+            snapshot = snapshot.with(certificate);
+            signingResultCache.invalidate(commonName);
+        } finally {
+            certificateWriteLock.unlock();
+        }
 
-        X509Certificate newCert = caService.issueCertificate(commonName, notBefore, notAfter, keyPair.getPublic());
+        log.info("Generated {} certificate for {} saved to KeyStore: {}", keyType.getLabel(), commonName, certificateStore.getLocation());
+        return new CertificateInfo(commonName, certificateStore.getLocation(), null, certificate.getCertificate().getNotAfter(), keyType.getLabel());
+    }
 
-        // Store the new certificate and private key in the generated KeyStore
-        Certificate[] chain = {newCert, caService.getCaCertificate()}; // Include CA cert in chain
-        generatedCertKeyStore.setKeyEntry(commonName, keyPair.getPrivate(), generatedKeystorePassword.toCharArray(), chain);
-        saveGeneratedCertKeyStore();
+    // Keys and certificates are produced in parallel; every issued entry is then stored in one write and published in one snapshot
+    public List<BulkIssueResult> generateAndSaveCertificates(List<CertificateIssueRequest> requests) throws InterruptedException {
+        if (!caService.isCaLoaded()) {
+            throw new IllegalStateException("CA is not loaded. Cannot generate certificates.");
+        }
+        if (!storeLoaded) {
+            throw new IllegalStateException("Generated certificates KeyStore is not loaded or created.");
+        }
 
-        log.info("Generated certificate for {} saved to KeyStore: {}", commonName, generatedKeystorePath);
-        return new CertificateInfo(commonName, generatedKeystorePath, null, newCert.getNotAfter());
+        BulkIssueResult[] results = new BulkIssueResult[requests.size()];
+        List<Future<SigningCertificate>> futures = new ArrayList<>(requests.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CertificateIssueRequest request = requests.get(i);
+            String commonName = request.getCommonName();
+            try {
+                if (commonName == null || commonName.isBlank()) {
+                    throw new IllegalStateException("commonName is required.");
+                }
+                if (request.getValidityDays() <= 0) {
+                    throw new IllegalStateException("validityDays must be positive.");
+                }
+                if (!seen.add(CertificateSnapshot.normalize(commonName))) {
+                    throw new IllegalStateException("Duplicate commonName " + commonName + " in batch.");
+                }
+                KeyType keyType = KeyType.fromString(request.getKeyType());
+                futures.add(bulkIssueExecutor.submit(() -> issue(commonName, request.getValidityDays(), keyType)));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                results[i] = BulkIssueResult.failure(i, commonName, 400, e.getMessage());
+                futures.add(null);
+            }
+        }
+
+        List<SigningCertificate> issued = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Future<SigningCertificate> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            try {
+                issued.add(future.get());
+            } catch (ExecutionException e) {
+                results[i] = BulkIssueResult.failure(i, requests.get(i).getCommonName(), 500, e.getCause().getMessage());
+            }
+        }
+
+        if (!issued.isEmpty()) {
+            certificateWriteLock.lock();
+            try {
+                certificateStore.putAll(issued);
+                snapshot = snapshot.withAll(issued);
+                for (SigningCertificate certificate : issued) {
+                    signingResultCache.invalidate(certificate.getAlias());
+                }
+            } catch (Exception e) {
+                log.error("Failed to store {} bulk-issued certificates: {}", issued.size(), e.getMessage());
+                for (int i = 0; i < requests.size(); i++) {
+                    if (results[i] == null) {
+                        results[i] = BulkIssueResult.failure(i, requests.get(i).getCommonName(), 500, "Failed to store certificate: " + e.getMessage());
+                    }
+                }
+                return List.of(results);
+            } finally {
+                certificateWriteLock.unlock();
+            }
+        }
+
+        int next = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] == null) {
+                SigningCertificate certificate = issued.get(next++);
+                results[i] = BulkIssueResult.success(i, certificate);
+            }
+        }
+        log.info("Bulk-issued {} of {} certificates into {}", issued.size(), requests.size(), certificateStore.getLocation());
+        return List.of(results);
+    }
+
+    private SigningCertificate issue(String commonName, long validityDays, KeyType keyType) throws Exception {
+        KeyPair keyPair = keyPairPool.take(keyType);
+        Date notBefore = new Date();
+        Date notAfter = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(validityDays));
+        X509Certificate newCert = caService.issueCertificate(commonName, notBefore, notAfter, keyPair.getPublic());
+        X509Certificate[] chain = {newCert, caService.getCaCertificate()}; // Include CA cert in chain
+        return new SigningCertificate(CertificateSnapshot.normalize(commonName), keyPair.getPrivate(), keyType, chain);
     }
 
     public List<CertificateInfo> getGeneratedCertificates() {
         List<CertificateInfo> certs = new ArrayList<>();
-        if (generatedCertKeyStore == null) {
+        if (!storeLoaded) {
             log.warn("Generated certificates KeyStore is not loaded. Returning empty list.");
             return certs;
         }
 
-        try {
-            Enumeration<String> aliases = generatedCertKeyStore.aliases();
-            while (aliases.hasMoreElements()) {
-                String alias = aliases.nextElement();
-                if (generatedCertKeyStore.isKeyEntry(alias)) {
-                    X509Certificate cert = (X509Certificate) generatedCertKeyStore.getCertificate(alias);
-                    certs.add(new CertificateInfo(alias, generatedKeystorePath, null, cert.getNotAfter()));
-                }
-            }
-        } catch (KeyStoreException e) {
-            log.error("Failed to list aliases from generated certificates KeyStore: {}", e.getMessage());
+        for (SigningCertificate certificate : snapshot.all()) {
+            certs.add(new CertificateInfo(certificate.getAlias(), certificateStore.getLocation(), null,
+                    certificate.getCertificate().getNotAfter(), certificate.getKeyType().getLabel()));
         }
         return certs;
     }
 
-    public void deleteCertificate(String commonName) throws KeyStoreException {
-        if (generatedCertKeyStore == null) {
+    public void deleteCertificate(String commonName) throws IOException, GeneralSecurityException {
+        if (!storeLoaded) {
             throw new IllegalStateException("Generated certificates KeyStore is not loaded.");
         }
-        if (!generatedCertKeyStore.containsAlias(commonName)) {
-            throw new IllegalArgumentException("Certificate with commonName " + commonName + " not found.");
+        certificateWriteLock.lock();
+        try {
+            if (snapshot.get(commonName) == null) {
+                throw new IllegalArgumentException("Certificate with commonName " + commonName + " not found.");
+            }
+            certificateStore.delete(commonName);
+            snapshot = snapshot.without(commonName);
+            signingResultCache.invalidate(commonName);
+        } finally {
+            certificateWriteLock.unlock();
         }
-
-        generatedCertKeyStore.deleteEntry(commonName);
-        saveGeneratedCertKeyStore();
         log.info("Certificate with commonName {} deleted from KeyStore.", commonName);
     }
 
     public String signJwt(String commonName, Map<String, Object> claims) throws Exception {
-        if (generatedCertKeyStore == null) {
+        return ServiceMetrics.time(meterRegistry, ServiceMetrics.JWT_SIGN, () -> buildJwt(getSigningKey(commonName), claims));
+    }
+
+    // Signs once per Idempotency-Key (or per canonical claims with hash-claims on) and replays that token to
+    // repeated and concurrent duplicate requests; without either, this is a plain signJwt
+    public SigningResultCache.Result signJwtIdempotent(String commonName, Map<String, Object> claims, String idempotencyKey) throws Exception {
+        if ((idempotencyKey == null || idempotencyKey.isBlank()) && !idempotencyHashClaims) {
+            return new SigningResultCache.Result(signJwt(commonName, claims), false);
+        }
+        String key = idempotencyKey == null || idempotencyKey.isBlank() ? null : idempotencyKey;
+        return ServiceMetrics.time(meterRegistry, ServiceMetrics.JWT_SIGN, () -> {
+            SigningCertificate signingKey = getSigningKey(commonName);
+            return signingResultCache.sign(signingKey, key, claims, () -> buildJwt(signingKey, claims));
+        });
+    }
+
+    // Signs an already parsed claims tree; the payload is serialized once, straight from the tree
+    public String signJwt(String commonName, JsonNode claims) throws Exception {
+        return ServiceMetrics.time(meterRegistry, ServiceMetrics.JWT_SIGN, () -> {
+            SigningCertificate signingKey = getSigningKey(commonName);
+            return Jwts.builder()
+                    .header().keyId(signingKey.getKeyId()).and()
+                    .content(objectMapper.writeValueAsBytes(claims))
+                    .signWith(signingKey.getPrivateKey(), signingKey.getKeyType().getJwsAlgorithm())
+                    .compact();
+        });
+    }
+
+    public List<BatchSignResult> signJwtBatch(List<JwtSignRequest> requests) throws InterruptedException {
+        // Resolve each key once per common name, remembering lookup failures for the affected items
+        Map<String, SigningCertificate> keys = new HashMap<>();
+        Map<String, Exception> keyErrors = new HashMap<>();
+        for (JwtSignRequest request : requests) {
+            String commonName = request.getCommonName();
+            if (keys.containsKey(commonName) || keyErrors.containsKey(commonName)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                keys.put(commonName, getSigningKey(commonName));
+            } catch (Exception e) {
+                keyErrors.put(commonName, e);
+                // One failed sample per lookup, timed like the lookup it was
+                ServiceMetrics.record(meterRegistry, ServiceMetrics.JWT_SIGN, ServiceMetrics.outcomeOf(e), System.nanoTime() - start);
+            }
+        }
+
+        List<Future<String>> futures = new ArrayList<>(requests.size());
+        for (JwtSignRequest request : requests) {
+            SigningCertificate signingKey = keys.get(request.getCommonName());
+            futures.add(signingKey == null ? null : batchSigningExecutor.submit(
+                    () -> ServiceMetrics.time(meterRegistry, ServiceMetrics.JWT_SIGN, () -> buildJwt(signingKey, request.getClaims()))));
+        }
+
+        List<BatchSignResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String commonName = requests.get(i).getCommonName();
+            Future<String> future = futures.get(i);
+            try {
+                if (future == null) {
+                    throw keyErrors.get(commonName);
+                }
+                results.add(BatchSignResult.success(i, commonName, future.get()));
+            } catch (ExecutionException e) {
+                results.add(BatchSignResult.failure(i, commonName, e.getCause()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                results.add(BatchSignResult.failure(i, commonName, e));
+            }
+        }
+        return results;
+    }
+
+    private String buildJwt(SigningCertificate signingKey, Map<String, Object> claims) throws Exception {
+        return signingKey.getJwsWriter().sign(claims);
+    }
+
+    // Keys are decoded when the snapshot is built, so signing never touches the store
+    SigningCertificate getSigningKey(String commonName) {
+        SigningCertificate signingKey = snapshot.get(commonName);
+        if (signingKey != null) {
+            keyCacheHits.incrementAndGet();
+            return signingKey;
+        }
+        keyCacheMisses.incrementAndGet();
+
+        if (!storeLoaded) {
             throw new IllegalStateException("Generated certificates KeyStore is not loaded.");
         }
-        if (!generatedCertKeyStore.containsAlias(commonName)) {
-            throw new IllegalArgumentException("Certificate with commonName " + commonName + " not found.");
+        throw new IllegalArgumentException("Certificate with commonName " + commonName + " not found.");
+    }
+
+    // Verifies against the cached public key of the certificate named by the kid header, or by the commonName hint
+    public VerificationResult verifyJwt(String token, String commonNameHint) {
+        long start = System.nanoTime();
+        String outcome = ServiceMetrics.ERROR;
+        try {
+            if (token == null || token.isBlank()) {
+                throw new IllegalStateException("Token is required.");
+            }
+            token = token.trim();
+            String keyId = readKeyId(token);
+            CertificateSnapshot current = snapshot;
+            SigningCertificate certificate = keyId != null ? current.getByKeyId(keyId) : current.get(commonNameHint);
+            if (certificate == null) {
+                throw new IllegalArgumentException(keyId != null
+                        ? "No certificate with kid " + keyId + " found."
+                        : "Certificate with commonName " + commonNameHint + " not found.");
+            }
+            if (keyId != null && commonNameHint != null && !certificate.getAlias().equals(CertificateSnapshot.normalize(commonNameHint))) {
+                throw new IllegalStateException("kid " + keyId + " does not belong to certificate " + commonNameHint + ".");
+            }
+
+            VerificationResult result;
+            try {
+                certificate.getCertificate().checkValidity();
+                Jws<Claims> jws = certificate.getVerifier().parseSignedClaims(token);
+                result = VerificationResult.valid(certificate, jws.getHeader(), jws.getPayload());
+            } catch (MalformedJwtException e) {
+                throw new IllegalStateException("Malformed JWT: " + e.getMessage());
+            } catch (JwtException | CertificateExpiredException | CertificateNotYetValidException e) {
+                result = VerificationResult.invalid(certificate, e.getMessage());
+            }
+            outcome = result.isValid() ? ServiceMetrics.SUCCESS : ServiceMetrics.INVALID;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = ServiceMetrics.outcomeOf(e);
+            throw e;
+        } finally {
+            ServiceMetrics.record(meterRegistry, ServiceMetrics.JWT_VERIFY, outcome, System.nanoTime() - start);
+        }
+    }
+
+    // Reads only the kid from the protected header so the certificate can be picked before signature verification
+    private String readKeyId(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            throw new IllegalStateException("Malformed JWT: expected a compact JWS.");
         }
+        try {
+            JsonNode header = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, dot)));
+            JsonNode kid = header == null ? null : header.get("kid");
+            return kid != null && kid.isTextual() ? kid.asText() : null;
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalStateException("Malformed JWT header.");
+        }
+    }
 
-        PrivateKey privateKey = (PrivateKey) generatedCertKeyStore.getKey(commonName, generatedKeystorePassword.toCharArray());
+    public CertificateSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        return Jwts.builder()
-                .claims(claims)
-                .signWith(privateKey, SignatureAlgorithm.RS256)
-                .compact();
+    // Reuses the serialized set until a certificate is added, removed or reloaded
+    public JwksDocument getJwks() {
+        CertificateSnapshot current = snapshot;
+        JwksDocument document = jwks;
+        if (document == null || document.getSnapshotVersion() != current.getVersion()) {
+            document = JwksDocument.build(current, objectMapper);
+            jwks = document;
+        }
+        return document;
     }
 
-    public X509Certificate getCertificateByCommonName(String commonName) throws KeyStoreException {
-        if (generatedCertKeyStore == null) {
+    public SigningResultCache.Stats getIdempotencyStats() {
+        return signingResultCache.getStats();
+    }
+
+    public KeyCacheStats getKeyCacheStats() {
+        return new KeyCacheStats(snapshot.size(), keyCacheHits.get(), keyCacheMisses.get());
+    }
+
+    public X509Certificate getCertificateByCommonName(String commonName) {
+        return findCertificate(commonName).getCertificate();
+    }
+
+    // Encoded bodies live on the snapshot entry, so issuance and deletion replace them with the entry
+    public EncodedCertificate getEncodedCertificate(String commonName) {
+        return findCertificate(commonName).getEncoded();
+    }
+
+    private SigningCertificate findCertificate(String commonName) {
+        if (!storeLoaded) {
             throw new IllegalStateException("Generated certificates KeyStore is not loaded.");
         }
-        if (!generatedCertKeyStore.containsAlias(commonName)) {
+        SigningCertificate certificate = snapshot.get(commonName);
+        if (certificate == null) {
             throw new IllegalArgumentException("Certificate with commonName " + commonName + " not found.");
         }
-        return (X509Certificate) generatedCertKeyStore.getCertificate(commonName);
+        return certificate;
     }
 
     public static class CertificateInfo {
@@ -171,12 +517,14 @@ public class JwtSigningService {
         private String keystorePath;
         private String keyPath; // Kept for compatibility, will be null
         private Date notAfter;
+        private String keyType;
 
-        public CertificateInfo(String commonName, String keystorePath, String keyPath, Date notAfter) {
+        public CertificateInfo(String commonName, String keystorePath, String keyPath, Date notAfter, String keyType) {
             this.commonName = commonName;
             this.keystorePath = keystorePath;
             this.keyPath = keyPath;
             this.notAfter = notAfter;
+            this.keyType = keyType;
         }
 
         public String getCommonName() {
@@ -194,5 +542,221 @@ public class JwtSigningService {
         public Date getNotAfter() {
             return notAfter;
         }
+
+        public String getKeyType() {
+            return keyType;
+        }
+    }
+
+    public static class KeyCacheStats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+
+        public KeyCacheStats(int size, long hits, long misses) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+
+    public static class BatchSignResult {
+        private final int index;
+        private final String commonName;
+        private final int status;
+        private final String signedJwt;
+        private final String error;
+
+        public BatchSignResult(int index, String commonName, int status, String signedJwt, String error) {
+            this.index = index;
+            this.commonName = commonName;
+            this.status = status;
+            this.signedJwt = signedJwt;
+            this.error = error;
+        }
+
+        static BatchSignResult success(int index, String commonName, String signedJwt) {
+            return new BatchSignResult(index, commonName, 200, signedJwt, null);
+        }
+
+        // Same status mapping as the single-item /jwt/sign endpoint
+        static BatchSignResult failure(int index, String commonName, Throwable e) {
+            int status = 500;
+            if (e instanceof IllegalArgumentException) {
+                status = 404;
+            } else if (e instanceof IllegalStateException) {
+                status = 400;
+            }
+            return new BatchSignResult(index, commonName, status, null, e.getMessage());
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getCommonName() {
+            return commonName;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status == 200;
+        }
+
+        public String getSignedJwt() {
+            return signedJwt;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    public static class VerificationResult {
+        private final boolean valid;
+        private final String commonName;
+        private final String keyId;
+        private final Date certificateNotAfter;
+        private final Map<String, Object> header;
+        private final Map<String, Object> claims;
+        private final String error;
+        private final ValidationResponse schemaValidation;
+
+        public VerificationResult(boolean valid, String commonName, String keyId, Date certificateNotAfter,
+                                  Map<String, Object> header, Map<String, Object> claims, String error,
+                                  ValidationResponse schemaValidation) {
+            this.valid = valid;
+            this.commonName = commonName;
+            this.keyId = keyId;
+            this.certificateNotAfter = certificateNotAfter;
+            this.header = header;
+            this.claims = claims;
+            this.error = error;
+            this.schemaValidation = schemaValidation;
+        }
+
+        static VerificationResult valid(SigningCertificate certificate, Map<String, Object> header, Map<String, Object> claims) {
+            return new VerificationResult(true, certificate.getAlias(), certificate.getKeyId(),
+                    certificate.getCertificate().getNotAfter(), new HashMap<>(header), new HashMap<>(claims), null, null);
+        }
+
+        static VerificationResult invalid(SigningCertificate certificate, String error) {
+            return new VerificationResult(false, certificate.getAlias(), certificate.getKeyId(),
+                    certificate.getCertificate().getNotAfter(), null, null, error, null);
+        }
+
+        // A valid signature with claims failing the schema is reported as invalid
+        public VerificationResult withSchemaValidation(ValidationResponse validation) {
+            return new VerificationResult(valid && validation.isSuccess(), commonName, keyId, certificateNotAfter,
+                    header, claims, error, validation);
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public String getCommonName() {
+            return commonName;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public Date getCertificateNotAfter() {
+            return certificateNotAfter;
+        }
+
+        public Map<String, Object> getHeader() {
+            return header;
+        }
+
+        public Map<String, Object> getClaims() {
+            return claims;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public ValidationResponse getSchemaValidation() {
+            return schemaValidation;
+        }
+    }
+
+    public static class BulkIssueResult {
+        private final int index;
+        private final String commonName;
+        private final int status;
+        private final String keyType;
+        private final String keyId;
+        private final Date notAfter;
+        private final String error;
+
+        public BulkIssueResult(int index, String commonName, int status, String keyType, String keyId, Date notAfter, String error) {
+            this.index = index;
+            this.commonName = commonName;
+            this.status = status;
+            this.keyType = keyType;
+            this.keyId = keyId;
+            this.notAfter = notAfter;
+            this.error = error;
+        }
+
+        static BulkIssueResult success(int index, SigningCertificate certificate) {
+            return new BulkIssueResult(index, certificate.getAlias(), 200, certificate.getKeyType().getLabel(),
+                    certificate.getKeyId(), certificate.getCertificate().getNotAfter(), null);
+        }
+
+        static BulkIssueResult failure(int index, String commonName, int status, String error) {
+            return new BulkIssueResult(index, commonName, status, null, null, null, error);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getCommonName() {
+            return commonName;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status == 200;
+        }
+
+        public String getKeyType() {
+            return keyType;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public Date getNotAfter() {
+            return notAfter;
+        }
+
+        public String getError() {
+            return error;
+        }
     }
 }
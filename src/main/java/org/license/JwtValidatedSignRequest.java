@@ -0,0 +1,33 @@
+package org.license;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class JwtValidatedSignRequest {
+    private String schemaName;
+    private String commonName;
+    private JsonNode claims;
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    public String getCommonName() {
+        return commonName;
+    }
+
+    public void setCommonName(String commonName) {
+        this.commonName = commonName;
+    }
+
+    public JsonNode getClaims() {
+        return claims;
+    }
+
+    public void setClaims(JsonNode claims) {
+        this.claims = claims;
+    }
+}
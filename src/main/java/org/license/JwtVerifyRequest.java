@@ -0,0 +1,31 @@
+package org.license;
+
+public class JwtVerifyRequest {
+    private String token;
+    private String commonName; // Used only when the token has no kid header
+    private String schemaName; // Optional
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getCommonName() {
+        return commonName;
+    }
+
+    public void setCommonName(String commonName) {
+        this.commonName = commonName;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(String schemaName) {
+        this.schemaName = schemaName;
+    }
+}
@@ -0,0 +1,297 @@
+package org.license;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class KeyPairPool {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    // The refill rate counts key pairs generated in the last minute, in one-second buckets
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    @Value("${keypool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${keypool.size:8}")
+    private int poolSize;
+
+    @Value("${keypool.key-types:RSA-2048}")
+    private List<String> pooledKeyTypes;
+
+    @Value("${keypool.encrypt-at-rest:true}")
+    private boolean encryptAtRest;
+
+    private final Map<KeyType, TypePool> pools = new EnumMap<>(KeyType.class);
+    private final SecureRandom secureRandom = new SecureRandom();
+    private SecretKey wrappingKey;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        if (!enabled) {
+            log.info("Key pair pool disabled; key pairs are generated inline.");
+            return;
+        }
+        if (encryptAtRest) {
+            // Ephemeral key, never persisted: spare private keys are only kept wrapped in memory
+            KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(256);
+            wrappingKey = keyGenerator.generateKey();
+        }
+        running = true;
+        for (String label : pooledKeyTypes) {
+            KeyType keyType = KeyType.fromString(label.trim());
+            if (pools.containsKey(keyType)) {
+                continue;
+            }
+            TypePool pool = new TypePool(keyType, poolSize);
+            pools.put(keyType, pool);
+            Thread refiller = new Thread(() -> refill(pool), "keypool-refill-" + keyType.getLabel());
+            refiller.setDaemon(true);
+            refiller.setPriority(Thread.MIN_PRIORITY);
+            pool.refiller = refiller;
+            refiller.start();
+        }
+        log.info("Key pair pool started for {} (size={}, encryptAtRest={})", pools.keySet(), poolSize, encryptAtRest);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (TypePool pool : pools.values()) {
+            if (pool.refiller != null) {
+                pool.refiller.interrupt();
+            }
+            pool.queue.clear();
+        }
+    }
+
+    // Takes a pre-generated key pair, falling back to inline generation when the pool is empty
+    public KeyPair take(KeyType keyType) throws GeneralSecurityException {
+        TypePool pool = pools.get(keyType);
+        if (pool != null) {
+            PooledKeyPair pooled = pool.queue.poll();
+            if (pooled != null) {
+                pool.hits.incrementAndGet();
+                return unwrap(keyType, pooled);
+            }
+            pool.misses.incrementAndGet();
+        }
+        return keyType.generateKeyPair();
+    }
+
+    private void refill(TypePool pool) {
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                KeyPair keyPair = pool.keyType.generateKeyPair();
+                PooledKeyPair pooled = wrap(keyPair);
+                long end = System.nanoTime();
+                pool.generated.incrementAndGet();
+                pool.generationNanos.addAndGet(end - start);
+                pool.recordGeneration(end);
+                // Blocks while the pool is full; take() frees a slot
+                pool.queue.put(pooled);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (GeneralSecurityException e) {
+                log.error("Failed to generate {} key pair for the pool: {}", pool.keyType.getLabel(), e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private PooledKeyPair wrap(KeyPair keyPair) throws GeneralSecurityException {
+        if (wrappingKey == null) {
+            return new PooledKeyPair(keyPair.getPublic(), keyPair.getPrivate(), null, null);
+        }
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.WRAP_MODE, wrappingKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        return new PooledKeyPair(keyPair.getPublic(), null, cipher.wrap(keyPair.getPrivate()), iv);
+    }
+
+    private KeyPair unwrap(KeyType keyType, PooledKeyPair pooled) throws GeneralSecurityException {
+        if (pooled.privateKey != null) {
+            return new KeyPair(pooled.publicKey, pooled.privateKey);
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.UNWRAP_MODE, wrappingKey, new GCMParameterSpec(GCM_TAG_BITS, pooled.iv));
+        PrivateKey privateKey = (PrivateKey) cipher.unwrap(pooled.wrappedPrivateKey, pooled.publicKey.getAlgorithm(), Cipher.PRIVATE_KEY);
+        return new KeyPair(pooled.publicKey, privateKey);
+    }
+
+    public List<PoolStats> getStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        for (TypePool pool : pools.values()) {
+            long generated = pool.generated.get();
+            double avgGenerationMillis = generated == 0 ? 0.0 : pool.generationNanos.get() / 1_000_000.0 / generated;
+            stats.add(new PoolStats(pool.keyType.getLabel(), pool.queue.size(), poolSize, generated,
+                    pool.refillRatePerSecond(System.nanoTime()), avgGenerationMillis,
+                    pool.hits.get(), pool.misses.get()));
+        }
+        return stats;
+    }
+
+    private static class TypePool {
+        private final KeyType keyType;
+        private final BlockingQueue<PooledKeyPair> queue;
+        private final AtomicLong generated = new AtomicLong();
+        private final AtomicLong generationNanos = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final long startedNanos = System.nanoTime();
+        private Thread refiller;
+        // Generation counts per second, indexed by second modulo the window; guarded by rateLock
+        private final long[] bucketSeconds = new long[RATE_WINDOW_SECONDS];
+        private final long[] bucketCounts = new long[RATE_WINDOW_SECONDS];
+        private final ReentrantLock rateLock = new ReentrantLock();
+
+        TypePool(KeyType keyType, int capacity) {
+            this.keyType = keyType;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void recordGeneration(long nanos) {
+            long second = secondOf(nanos);
+            int bucket = (int) (second % RATE_WINDOW_SECONDS);
+            rateLock.lock();
+            try {
+                if (bucketSeconds[bucket] != second) {
+                    bucketSeconds[bucket] = second;
+                    bucketCounts[bucket] = 0;
+                }
+                bucketCounts[bucket]++;
+            } finally {
+                rateLock.unlock();
+            }
+        }
+
+        // Drops to zero while the pool is full, since the refiller then waits for take()
+        double refillRatePerSecond(long nanos) {
+            long second = secondOf(nanos);
+            long generated = 0;
+            rateLock.lock();
+            try {
+                for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+                    if (bucketCounts[i] > 0 && second - bucketSeconds[i] < RATE_WINDOW_SECONDS) {
+                        generated += bucketCounts[i];
+                    }
+                }
+            } finally {
+                rateLock.unlock();
+            }
+            // A pool younger than the window is measured over its own age
+            double windowSeconds = Math.min(RATE_WINDOW_SECONDS, (nanos - startedNanos) / 1_000_000_000.0);
+            return windowSeconds > 0 ? generated / windowSeconds : 0.0;
+        }
+
+        private long secondOf(long nanos) {
+            return (nanos - startedNanos) / 1_000_000_000L;
+        }
+    }
+
+    private static class PooledKeyPair {
+        private final PublicKey publicKey;
+        private final PrivateKey privateKey;
+        private final byte[] wrappedPrivateKey;
+        private final byte[] iv;
+
+        PooledKeyPair(PublicKey publicKey, PrivateKey privateKey, byte[] wrappedPrivateKey, byte[] iv) {
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+            this.wrappedPrivateKey = wrappedPrivateKey;
+            this.iv = iv;
+        }
+    }
+
+    public static class PoolStats {
+        private final String keyType;
+        private final int depth;
+        private final int capacity;
+        private final long generated;
+        // Over the last minute, not since startup
+        private final double refillRatePerSecond;
+        private final double avgGenerationMillis;
+        private final long hits;
+        private final long misses;
+
+        public PoolStats(String keyType, int depth, int capacity, long generated, double refillRatePerSecond,
+                         double avgGenerationMillis, long hits, long misses) {
+            this.keyType = keyType;
+            this.depth = depth;
+            this.capacity = capacity;
+            this.generated = generated;
+            this.refillRatePerSecond = refillRatePerSecond;
+            this.avgGenerationMillis = avgGenerationMillis;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getKeyType() {
+            return keyType;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getGenerated() {
+            return generated;
+        }
+
+        public double getRefillRatePerSecond() {
+            return refillRatePerSecond;
+        }
+
+        public double getAvgGenerationMillis() {
+            return avgGenerationMillis;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+}
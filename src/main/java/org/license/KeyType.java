@@ -0,0 +1,105 @@
+package org.license;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.ECGenParameterSpec;
+
+public enum KeyType {
+    RSA_2048("RSA-2048", "RSA", 2048, null, "SHA256WithRSAEncryption"),
+    RSA_3072("RSA-3072", "RSA", 3072, null, "SHA256WithRSAEncryption"),
+    EC_P256("EC-P256", "EC", 256, "secp256r1", "SHA256withECDSA"),
+    EC_P384("EC-P384", "EC", 384, "secp384r1", "SHA384withECDSA"),
+    ED25519("Ed25519", "Ed25519", 255, null, "Ed25519");
+
+    private final String label;
+    private final String keyAlgorithm;
+    private final int keySize;
+    private final String curve;
+    private final String certificateSignatureAlgorithm;
+
+    KeyType(String label, String keyAlgorithm, int keySize, String curve, String certificateSignatureAlgorithm) {
+        this.label = label;
+        this.keyAlgorithm = keyAlgorithm;
+        this.keySize = keySize;
+        this.curve = curve;
+        this.certificateSignatureAlgorithm = certificateSignatureAlgorithm;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm, "BC");
+        if (curve != null) {
+            keyPairGenerator.initialize(new ECGenParameterSpec(curve));
+        } else if ("RSA".equals(keyAlgorithm)) {
+            keyPairGenerator.initialize(keySize);
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    // Content signer algorithm used when a key of this type signs an X.509 certificate
+    public String getCertificateSignatureAlgorithm() {
+        return certificateSignatureAlgorithm;
+    }
+
+    public SignatureAlgorithm getJwsAlgorithm() {
+        return switch (this) {
+            case RSA_2048, RSA_3072 -> Jwts.SIG.RS256;
+            case EC_P256 -> Jwts.SIG.ES256;
+            case EC_P384 -> Jwts.SIG.ES384;
+            case ED25519 -> Jwts.SIG.EdDSA;
+        };
+    }
+
+    // JCA algorithm that yields the JWS signature bytes directly (fixed-length R || S for ECDSA, as RFC 7518 requires)
+    public String getJwsSignatureAlgorithm() {
+        return switch (this) {
+            case RSA_2048, RSA_3072 -> "SHA256withRSA";
+            case EC_P256 -> "SHA256withECDSAinP1363Format";
+            case EC_P384 -> "SHA384withECDSAinP1363Format";
+            case ED25519 -> "Ed25519";
+        };
+    }
+
+    public static KeyType fromString(String value) {
+        for (KeyType keyType : values()) {
+            if (keyType.label.equalsIgnoreCase(value) || keyType.name().equalsIgnoreCase(value)) {
+                return keyType;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported key type: " + value + ". Supported types: RSA-2048, RSA-3072, EC-P256, EC-P384, Ed25519.");
+    }
+
+    // Sizes must match a supported type exactly; a 4096-bit RSA or P-521 key is rejected rather than mislabeled
+    public static KeyType fromKey(Key key) {
+        if (key instanceof RSAKey rsaKey) {
+            return ofSize("RSA", rsaKey.getModulus().bitLength());
+        }
+        if (key instanceof ECKey ecKey) {
+            return ofSize("EC", ecKey.getParams().getOrder().bitLength());
+        }
+        String algorithm = key.getAlgorithm();
+        if ("Ed25519".equalsIgnoreCase(algorithm) || "EdDSA".equalsIgnoreCase(algorithm)) {
+            return ED25519;
+        }
+        throw new IllegalArgumentException("Unsupported key algorithm: " + algorithm);
+    }
+
+    private static KeyType ofSize(String keyAlgorithm, int keySize) {
+        for (KeyType keyType : values()) {
+            if (keyType.keyAlgorithm.equals(keyAlgorithm) && keyType.keySize == keySize) {
+                return keyType;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported " + keyAlgorithm + " key size: " + keySize + " bits");
+    }
+}
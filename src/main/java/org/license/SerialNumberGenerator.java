@@ -0,0 +1,45 @@
+package org.license;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+// Random positive certificate serials; with no shared state they stay unique across threads and nodes
+@Component
+public class SerialNumberGenerator {
+
+    static final int MIN_BITS = 64;
+    // RFC 5280 caps serials at 20 octets; 159 bits keeps the positive DER INTEGER within that
+    static final int MAX_BITS = 159;
+
+    private final int bits;
+    private final SecureRandom random;
+
+    public SerialNumberGenerator(@Value("${ca.serial.bits:128}") int bits) {
+        if (bits < MIN_BITS || bits > MAX_BITS) {
+            throw new IllegalArgumentException("ca.serial.bits must be between " + MIN_BITS + " and " + MAX_BITS + ", was " + bits);
+        }
+        this.bits = bits;
+        this.random = createRandom();
+    }
+
+    public BigInteger next() {
+        BigInteger serial;
+        do {
+            serial = new BigInteger(bits, random);
+        } while (serial.signum() == 0);
+        return serial;
+    }
+
+    // DRBG works from memory after seeding, unlike NativePRNG which reads /dev/urandom under a lock
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
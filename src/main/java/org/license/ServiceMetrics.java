@@ -0,0 +1,56 @@
+package org.license;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+// Timer names and outcome tags shared by the services; outcomes follow the controllers' exception-to-status mapping
+final class ServiceMetrics {
+
+    static final String JWT_SIGN = "jwt.sign";
+    static final String JWT_VERIFY = "jwt.verify";
+    static final String CA_ISSUE = "ca.certificate.issue";
+    static final String SCHEMA_VALIDATE = "jwt.schema.validate";
+    static final String HISTORY_WRITE = "jwt.history.write";
+
+    static final String SUCCESS = "success";
+    static final String INVALID = "invalid";
+    static final String NOT_FOUND = "not_found";
+    static final String BAD_REQUEST = "bad_request";
+    static final String ERROR = "error";
+
+    private ServiceMetrics() {
+    }
+
+    static String outcomeOf(Throwable e) {
+        if (e instanceof IllegalArgumentException || e instanceof IOException) {
+            return NOT_FOUND;
+        }
+        if (e instanceof IllegalStateException) {
+            return BAD_REQUEST;
+        }
+        return ERROR;
+    }
+
+    // Records the call's latency under the given timer, tagged with its outcome
+    static <T> T time(MeterRegistry registry, String name, Callable<T> call) throws Exception {
+        long start = System.nanoTime();
+        String outcome = ERROR;
+        try {
+            T result = call.call();
+            outcome = SUCCESS;
+            return result;
+        } catch (Exception e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            record(registry, name, outcome, System.nanoTime() - start);
+        }
+    }
+
+    static void record(MeterRegistry registry, String name, String outcome, long nanos) {
+        registry.timer(name, "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
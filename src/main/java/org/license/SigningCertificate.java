@@ -0,0 +1,102 @@
+package org.license;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+
+// Immutable view of one generated certificate: decoded private key, key type and parsed chain
+public final class SigningCertificate {
+
+    private final String alias;
+    private final PrivateKey privateKey;
+    private final KeyType keyType;
+    private final X509Certificate[] chain;
+    private final PublicKey publicKey;
+    private final String keyId;
+
+    // Built on first use; all are thread-safe, so a racing duplicate build is harmless
+    private volatile JwtParser verifier;
+    private volatile EncodedCertificate encoded;
+    private volatile CompactJwsWriter jwsWriter;
+
+    public SigningCertificate(String alias, PrivateKey privateKey, KeyType keyType, X509Certificate[] chain) {
+        this.alias = alias;
+        this.privateKey = privateKey;
+        this.keyType = keyType;
+        this.chain = chain.clone();
+        this.publicKey = this.chain[0].getPublicKey();
+        this.keyId = thumbprint(this.chain[0]);
+    }
+
+    // Base64url SHA-256 thumbprint of the DER certificate (the JWK x5t#S256 value), used as the JWS kid
+    static String thumbprint(X509Certificate certificate) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            throw new IllegalArgumentException("Cannot compute certificate thumbprint", e);
+        }
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public JwtParser getVerifier() {
+        JwtParser parser = verifier;
+        if (parser == null) {
+            parser = Jwts.parser().verifyWith(publicKey).build();
+            verifier = parser;
+        }
+        return parser;
+    }
+
+    public CompactJwsWriter getJwsWriter() {
+        CompactJwsWriter writer = jwsWriter;
+        if (writer == null) {
+            writer = CompactJwsWriter.of(this);
+            jwsWriter = writer;
+        }
+        return writer;
+    }
+
+    public EncodedCertificate getEncoded() {
+        EncodedCertificate bodies = encoded;
+        if (bodies == null) {
+            bodies = EncodedCertificate.of(chain);
+            encoded = bodies;
+        }
+        return bodies;
+    }
+
+    public X509Certificate getCertificate() {
+        return chain[0];
+    }
+
+    public X509Certificate[] getChain() {
+        return chain.clone();
+    }
+}
@@ -0,0 +1,252 @@
+package org.license;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Bounded LRU of issued tokens for idempotent signing. Entries expire after the TTL and are only valid for the
+// SigningCertificate instance that signed them, so a deleted or reissued certificate never replays an old token.
+// The first request for a key signs; duplicates wait for that token to be committed instead of signing again.
+public final class SigningResultCache {
+
+    // Sorted keys at every level, so equal claims hash equally whatever order the client sent them in
+    private static final ObjectMapper CANONICAL = new ObjectMapper().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    // Access-ordered, so every get is a write; guarded by entriesLock (not a monitor, so virtual threads never pin
+    // on it) and never held while signing
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock entriesLock = new ReentrantLock();
+    private final AtomicLong replays = new AtomicLong();
+    private final AtomicLong signed = new AtomicLong();
+
+    public SigningResultCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    SigningResultCache(int maxEntries, Duration ttl, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+    }
+
+    // Signs under the Idempotency-Key when given, otherwise under the canonical claims hash. A fresh result is pending:
+    // duplicates wait until the caller commits it (its history row is accepted) or discards it (then one of them signs).
+    public Result sign(SigningCertificate signingKey, String idempotencyKey, Map<String, Object> claims,
+                       Callable<String> signer) throws Exception {
+        String claimsHash = claimsHash(claims);
+        String cacheKey = idempotencyKey != null
+                ? "key:" + signingKey.getAlias() + "\n" + idempotencyKey
+                : "claims:" + signingKey.getAlias() + "\n" + claimsHash;
+
+        while (true) {
+            Entry entry;
+            boolean leader = false;
+            entriesLock.lock();
+            try {
+                entry = entries.get(cacheKey);
+                if (entry != null && (entry.signingKey != signingKey || clock.getAsLong() - entry.createdAt > ttlNanos)) {
+                    entries.remove(cacheKey);
+                    entry = null;
+                }
+                if (entry == null) {
+                    entry = new Entry(signingKey, claimsHash, clock.getAsLong());
+                    entries.put(cacheKey, entry);
+                    leader = true;
+                    evictOverflow();
+                }
+            } finally {
+                entriesLock.unlock();
+            }
+
+            if (!entry.claimsHash.equals(claimsHash)) {
+                throw new IllegalStateException("Idempotency-Key " + idempotencyKey + " was already used with different claims.");
+            }
+            if (leader) {
+                try {
+                    return new Result(signer.call(), false, this, cacheKey, entry);
+                } catch (Exception e) {
+                    // Failures are not cached; waiters see this one and the next request signs afresh
+                    remove(cacheKey, entry);
+                    entry.token.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                String token = entry.token.get();
+                replays.incrementAndGet();
+                return new Result(token, true);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof DiscardedException) {
+                    continue;
+                }
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void remove(String cacheKey, Entry entry) {
+        entriesLock.lock();
+        try {
+            entries.remove(cacheKey, entry);
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    // Drops every token signed for the certificate; called when it is deleted or reissued
+    public void invalidate(String alias) {
+        String normalized = CertificateSnapshot.normalize(alias);
+        entriesLock.lock();
+        try {
+            entries.values().removeIf(entry -> entry.signingKey.getAlias().equals(normalized));
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        entriesLock.lock();
+        try {
+            entries.clear();
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        entriesLock.lock();
+        try {
+            return new Stats(entries.size(), replays.get(), signed.get());
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    static String claimsHash(Map<String, Object> claims) throws JsonProcessingException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(CANONICAL.writeValueAsBytes(claims));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final SigningCertificate signingKey;
+        private final String claimsHash;
+        private final long createdAt;
+        private final CompletableFuture<String> token = new CompletableFuture<>();
+
+        private Entry(SigningCertificate signingKey, String claimsHash, long createdAt) {
+            this.signingKey = signingKey;
+            this.claimsHash = claimsHash;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Marks a flight whose token was thrown away; its waiters start over
+    private static final class DiscardedException extends Exception {
+        private DiscardedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    public static class Result {
+        private final String token;
+        private final boolean replayed;
+        // Set while a freshly signed token is still pending in the cache
+        private final SigningResultCache cache;
+        private final String cacheKey;
+        private final Entry entry;
+
+        public Result(String token, boolean replayed) {
+            this(token, replayed, null, null, null);
+        }
+
+        private Result(String token, boolean replayed, SigningResultCache cache, String cacheKey, Entry entry) {
+            this.token = token;
+            this.replayed = replayed;
+            this.cache = cache;
+            this.cacheKey = cacheKey;
+            this.entry = entry;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+
+        // Publishes the token to duplicates; no-op for replays and uncached results
+        public void commit() {
+            if (entry != null && entry.token.complete(token)) {
+                cache.signed.incrementAndGet();
+            }
+        }
+
+        // Drops the token so a retry signs again instead of replaying a token that was never recorded
+        public void discard() {
+            if (entry != null) {
+                cache.remove(cacheKey, entry);
+                entry.token.completeExceptionally(new DiscardedException());
+            }
+        }
+    }
+
+    public static class Stats {
+        private final int size;
+        private final long replays;
+        private final long signed;
+
+        public Stats(int size, long replays, long signed) {
+            this.size = size;
+            this.replays = replays;
+            this.signed = signed;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getReplays() {
+            return replays;
+        }
+
+        public long getSigned() {
+            return signed;
+        }
+    }
+}
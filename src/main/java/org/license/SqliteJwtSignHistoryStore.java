@@ -0,0 +1,75 @@
+package org.license;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The jwt_sign_history table; reads and writes go through the JPA repository and its JDBC fragment, which keeps JWT
+// headers and claims compressed and deduplicated in jwt_payload
+public class SqliteJwtSignHistoryStore implements JwtSignHistoryStore {
+
+    private final JwtSignHistoryRepository jwtSignHistoryRepository;
+    private final JwtPayloadCodec jwtPayloadCodec;
+
+    public SqliteJwtSignHistoryStore(JwtSignHistoryRepository jwtSignHistoryRepository, JwtPayloadCodec jwtPayloadCodec) {
+        this.jwtSignHistoryRepository = jwtSignHistoryRepository;
+        this.jwtPayloadCodec = jwtPayloadCodec;
+    }
+
+    @Override
+    public void insertBatch(List<JwtSignHistory> histories) {
+        jwtSignHistoryRepository.insertBatch(histories);
+        // After the commit, so a dictionary is never saved by a batch that rolls back
+        jwtPayloadCodec.trainIfDue();
+    }
+
+    @Override
+    public JwtSignHistory save(JwtSignHistory history) {
+        return jwtSignHistoryRepository.insert(history);
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        return jwtSignHistoryRepository.deleteRow(id);
+    }
+
+    @Override
+    public long count() {
+        return jwtSignHistoryRepository.count();
+    }
+
+    @Override
+    public List<JwtSignHistory> findPage(JwtSignHistoryQuery query) {
+        return jwtSignHistoryRepository.findPage(query);
+    }
+
+    @Override
+    public int streamRows(JwtSignHistoryQuery query, int maxRows, int fetchSize, Consumer<JwtSignHistory> consumer) {
+        return jwtSignHistoryRepository.streamRows(query, maxRows, fetchSize, consumer);
+    }
+
+    @Override
+    public Long findIdFromNewest(long offset) {
+        return jwtSignHistoryRepository.findIdFromNewest(offset);
+    }
+
+    @Override
+    public Long findFirstIdSince(LocalDateTime cutoff) {
+        return jwtSignHistoryRepository.findFirstIdSince(cutoff);
+    }
+
+    @Override
+    public Long findMinId() {
+        return jwtSignHistoryRepository.findMinId();
+    }
+
+    @Override
+    public Long findMaxId() {
+        return jwtSignHistoryRepository.findMaxId();
+    }
+
+    @Override
+    public int deleteWithIdBelow(long id) {
+        return jwtSignHistoryRepository.deleteWithIdBelow(id);
+    }
+}
@@ -1,22 +1,85 @@
 package org.license;
 
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+// Small export segments so exports in these tests span several cursors
+@SpringBootTest(properties = "jwt.history.export.segment-size=2")
 @AutoConfigureMockMvc
 class ApplicationTests {
 
+    // A fresh database per run, so exact row counts are not thrown off by earlier runs against db/history.db
+    @DynamicPropertySource
+    static void historyDatabase(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("history-test");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + directory.resolve("history.db"));
+        registry.add("jwt.history.journal.directory", () -> directory.resolve("journal").toString());
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private JwtSigningService jwtSigningService;
+
+    @Autowired
+    private JwtSignHistoryWriter jwtSignHistoryWriter;
+
+    @Autowired
+    private JwtSignHistoryStore jwtSignHistoryStore;
+
+    @Autowired
+    private JwtSignHistoryRetention jwtSignHistoryRetention;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.history.export.timeout}")
+    private Duration exportTimeout;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("historyReaderDataSource")
+    private DataSource historyReaderDataSource;
+
     @Test
     void testJwtSigningWorkflow() throws Exception {
         // 1. Generate Certificate
@@ -40,6 +103,7 @@ class ApplicationTests {
                 .andExpect(status().isOk());
 
         // 4. Verify History
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
         mockMvc.perform(get("/history"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].success").value(true));
@@ -49,6 +113,128 @@ class ApplicationTests {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testSigningKeyCacheServesWarmSigning() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "cache-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+
+        JwtSigningService.KeyCacheStats before = jwtSigningService.getKeyCacheStats();
+        String requestBody = "{\"commonName\":\"cache-cert\",\"claims\":{\"sub\":\"cache\"}}";
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(requestBody))
+                    .andExpect(status().isOk());
+        }
+        JwtSigningService.KeyCacheStats after = jwtSigningService.getKeyCacheStats();
+        assertEquals(before.getHits() + 3, after.getHits());
+        assertEquals(before.getMisses(), after.getMisses());
+
+        mockMvc.perform(delete("/certificates/cache-cert"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testIdempotentSigningReplaysToken() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "idem-cert")
+                        .param("validityDays", "30")
+                        .param("keyType", "EC-P256"))
+                .andExpect(status().isOk());
+        String requestBody = "{\"commonName\":\"idem-cert\",\"claims\":{\"sub\":\"idem\",\"seats\":3}}";
+
+        // ECDSA signatures are randomized, so an equal token can only be a replay
+        String first = mockMvc.perform(post("/jwt/sign")
+                        .header("Idempotency-Key", "provision-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(post("/jwt/sign")
+                        .header("Idempotency-Key", "provision-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().string(first));
+        String unkeyed = mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertNotEquals(first, unkeyed);
+
+        mockMvc.perform(post("/jwt/sign")
+                        .header("Idempotency-Key", "provision-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commonName\":\"idem-cert\",\"claims\":{\"sub\":\"other\"}}"))
+                .andExpect(status().isBadRequest());
+
+        // Replays leave no history row of their own: one each for the first, unkeyed and mismatched requests
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jwt_sign_history"
+                + " WHERE common_name = 'idem-cert'", Integer.class));
+        mockMvc.perform(get("/jwt/idempotency/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.replays").isNumber());
+
+        // Reissuing the certificate invalidates the cached token
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "idem-cert")
+                        .param("validityDays", "30")
+                        .param("keyType", "EC-P256"))
+                .andExpect(status().isOk());
+        String reissued = mockMvc.perform(post("/jwt/sign")
+                        .header("Idempotency-Key", "provision-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn().getResponse().getContentAsString();
+        assertNotEquals(first, reissued);
+
+        mockMvc.perform(delete("/certificates/idem-cert"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/jwt/sign")
+                        .header("Idempotency-Key", "provision-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testBatchSigning() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "batch-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+
+        String requestBody = "[" +
+                "{\"commonName\":\"batch-cert\",\"claims\":{\"sub\":\"a\"}}," +
+                "{\"commonName\":\"missing-cert\",\"claims\":{\"sub\":\"b\"}}," +
+                "{\"commonName\":\"batch-cert\",\"claims\":{\"sub\":\"c\"}}]";
+        mockMvc.perform(post("/jwt/sign/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[1].status").value(404))
+                .andExpect(jsonPath("$[2].status").value(200))
+                .andExpect(jsonPath("$[2].signedJwt").isNotEmpty());
+
+        mockMvc.perform(delete("/certificates/batch-cert"))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void testSchemaLifecycle() throws Exception {
         String schema = "{\"type\":\"object\",\"properties\":{\"sub\":{\"type\":\"string\"}},\"required\":[\"sub\"]}";
@@ -68,4 +254,533 @@ class ApplicationTests {
         mockMvc.perform(delete("/schemas/test-schema"))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCompiledSchemaInvalidatedOnSave() throws Exception {
+        String verifyBody = "{\"schemaName\":\"cache-schema\",\"claims\":{\"sub\":\"abc\"}}";
+
+        mockMvc.perform(post("/schemas/cache-schema")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"object\",\"required\":[\"sub\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/schemas/verify-claims")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(verifyBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+
+        // Replacing the schema must not keep serving the previously compiled version
+        mockMvc.perform(post("/schemas/cache-schema")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"object\",\"required\":[\"sub\",\"name\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/schemas/verify-claims")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(verifyBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false));
+
+        mockMvc.perform(delete("/schemas/cache-schema"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/schemas/verify-claims")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(verifyBody))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testValidateAndSign() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "validated-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/schemas/validated-schema")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"object\",\"required\":[\"sub\"]}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/jwt/sign/validated")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"schemaName\":\"validated-schema\",\"commonName\":\"validated-cert\",\"claims\":{\"sub\":\"abc\"}}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/jwt/sign/validated")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"schemaName\":\"validated-schema\",\"commonName\":\"validated-cert\",\"claims\":{\"name\":\"abc\"}}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+
+        mockMvc.perform(delete("/schemas/validated-schema"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/certificates/validated-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testEcAndEd25519Certificates() throws Exception {
+        String[][] cases = {{"ec-cert", "EC-P256", "ES256"}, {"ed-cert", "Ed25519", "EdDSA"}};
+        for (String[] c : cases) {
+            mockMvc.perform(post("/certificates/generate")
+                            .param("commonName", c[0])
+                            .param("validityDays", "30")
+                            .param("keyType", c[1]))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.keyType").value(c[1]));
+
+            String signedJwt = mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"commonName\":\"" + c[0] + "\",\"claims\":{\"sub\":\"abc\"}}"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            String header = new String(java.util.Base64.getUrlDecoder().decode(signedJwt.split("\\.")[0]));
+            assertTrue(header.contains("\"alg\":\"" + c[2] + "\""), header);
+
+            mockMvc.perform(delete("/certificates/" + c[0]))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "bad-key-cert")
+                        .param("keyType", "DSA-1024"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testKeyPoolStats() throws Exception {
+        mockMvc.perform(get("/certificates/key-pool/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].keyType").value("RSA-2048"))
+                .andExpect(jsonPath("$[0].capacity").value(8))
+                .andExpect(jsonPath("$[0].refillRatePerSecond").isNumber());
+    }
+
+    @Test
+    void testHistoryPagination() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "page-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        String requestBody = "{\"commonName\":\"page-cert\",\"claims\":{\"sub\":\"page\"}}";
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(requestBody))
+                    .andExpect(status().isOk());
+        }
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+
+        String cursor = mockMvc.perform(get("/history")
+                        .param("commonName", "page-cert")
+                        .param("success", "true")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].commonName").value("page-cert"))
+                .andExpect(jsonPath("$[0].signedJwtResult").doesNotExist())
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/history")
+                        .param("commonName", "page-cert")
+                        .param("after", cursor)
+                        .param("limit", "2")
+                        .param("includeJwt", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].signedJwtResult").isNotEmpty())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        mockMvc.perform(delete("/certificates/page-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testHistoryDatabaseUsesWalWithReadOnlyReaders() throws Exception {
+        assertEquals("wal", jdbcTemplate.queryForObject("PRAGMA journal_mode", String.class));
+
+        try (Connection connection = historyReaderDataSource.getConnection()) {
+            assertTrue(connection.isReadOnly());
+            assertThrows(Exception.class, () -> connection.createStatement()
+                    .executeUpdate("DELETE FROM jwt_sign_history WHERE id < 0"));
+        }
+
+        mockMvc.perform(get("/history").param("limit", "1"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testHistoryRetentionPrunesToMaxEntries() throws Exception {
+        List<JwtSignHistory> rows = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            JwtSignHistory history = new JwtSignHistory();
+            history.setTimestamp(LocalDateTime.now());
+            history.setSuccess(true);
+            history.setCommonName("retention-cert");
+            rows.add(history);
+        }
+        jwtSignHistoryStore.insertBatch(rows);
+        assertTrue(jwtSignHistoryStore.count() > 100);
+
+        assertTrue(jwtSignHistoryRetention.runRetention() > 0);
+        assertEquals(100, jwtSignHistoryStore.count());
+
+        mockMvc.perform(get("/history/retention/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.maxEntries").value(100))
+                .andExpect(jsonPath("$.lastRunRowsPruned").isNumber());
+    }
+
+    @Test
+    void testHistoryPayloadsStoredCompressedAndDeduplicated() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "compress-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        String requestBody = "{\"commonName\":\"compress-cert\",\"claims\":{\"sub\":\"same-user\",\"roles\":[\"admin\"]}}";
+        List<String> signed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            signed.add(mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(requestBody))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        }
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+
+        String manualRow = "{\"commonName\":\"compress-cert\",\"success\":true," +
+                "\"originalJwt\":\"{\\\"sub\\\":\\\"same-user\\\"}\",\"signedJwtResult\":\"not-a-jws\"}";
+        List<Long> manualIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String created = mockMvc.perform(post("/history")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(manualRow))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").isNumber())
+                    .andReturn().getResponse().getContentAsString();
+            manualIds.add(Long.parseLong(created.replaceAll(".*\"id\":(\\d+).*", "$1")));
+        }
+
+        // Plain columns stay empty; the JWS header and the manual rows' bodies are each stored once
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jwt_sign_history WHERE common_name = 'compress-cert'"
+                + " AND (signed_jwt_result IS NOT NULL OR original_jwt IS NOT NULL OR payload_hash IS NULL)", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT header_hash) FROM jwt_sign_history"
+                + " WHERE common_name = 'compress-cert'", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT original_hash) FROM jwt_sign_history"
+                + " WHERE common_name = 'compress-cert'", Integer.class));
+
+        String body = mockMvc.perform(get("/history")
+                        .param("commonName", "compress-cert")
+                        .param("includeJwt", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[3].originalJwt").value("{\"sub\":\"same-user\"}"))
+                .andExpect(jsonPath("$[3].signedJwtResult").value("not-a-jws"))
+                .andExpect(jsonPath("$[0].payloadHash").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        for (String jwt : signed) {
+            assertTrue(body.contains("\"" + jwt + "\""));
+        }
+        mockMvc.perform(get("/history").param("commonName", "compress-cert"))
+                .andExpect(jsonPath("$[0].signedJwtResult").doesNotExist());
+
+        // The shared payload outlives one of the rows that reference it
+        mockMvc.perform(delete("/history/" + manualIds.get(0)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/history")
+                        .param("commonName", "compress-cert")
+                        .param("includeJwt", "true"))
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[3].originalJwt").value("{\"sub\":\"same-user\"}"));
+
+        mockMvc.perform(post("/history/compression/dictionary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").isNumber())
+                .andExpect(jsonPath("$.size").isNumber());
+        String afterTraining = mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody.replace("same-user", "after-training")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+        mockMvc.perform(get("/history")
+                        .param("commonName", "compress-cert")
+                        .param("includeJwt", "true"))
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[4].signedJwtResult").value(afterTraining));
+
+        mockMvc.perform(get("/history/compression/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payloads").isNumber())
+                .andExpect(jsonPath("$.compressionRatio").isNumber())
+                .andExpect(jsonPath("$.effectiveRatio").isNumber());
+
+        mockMvc.perform(delete("/certificates/compress-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testHistoryExport() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "export-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        String requestBody = "{\"commonName\":\"export-cert\",\"claims\":{\"sub\":\"a,\\\"b\\\"\"}}";
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(requestBody))
+                    .andExpect(status().isOk());
+        }
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+
+        MvcResult csvResult = mockMvc.perform(get("/history/export")
+                        .param("format", "csv")
+                        .param("commonName", "export-cert")
+                        .param("includeJwt", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(exportTimeout.toMillis(), csvResult.getRequest().getAsyncContext().getTimeout());
+        String csv = mockMvc.perform(asyncDispatch(csvResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+        // Five rows across three segments of two, each row once and in id order
+        String[] lines = csv.split("\n");
+        assertEquals(6, lines.length);
+        for (int i = 2; i < lines.length; i++) {
+            assertTrue(Long.parseLong(lines[i].split(",")[0]) > Long.parseLong(lines[i - 1].split(",")[0]));
+        }
+        assertTrue(lines[0].startsWith("id,timestamp,success,commonName"));
+        assertTrue(lines[1].contains(",true,export-cert,"));
+
+        MvcResult ndjsonResult = mockMvc.perform(get("/history/export")
+                        .param("commonName", "export-cert")
+                        .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] compressed = mockMvc.perform(asyncDispatch(ndjsonResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        String ndjson;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ndjson = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] records = ndjson.split("\n");
+        assertEquals(5, records.length);
+        assertTrue(records[0].startsWith("{") && records[0].contains("\"commonName\":\"export-cert\""));
+
+        mockMvc.perform(get("/history/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/certificates/export-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testServiceMetrics() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "metrics-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commonName\":\"metrics-cert\",\"claims\":{\"sub\":\"m\"}}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commonName\":\"metrics-missing\",\"claims\":{\"sub\":\"m\"}}"))
+                .andExpect(status().isNotFound());
+        assertTrue(jwtSignHistoryWriter.awaitDrained(5000));
+
+        assertTrue(meterRegistry.get("jwt.sign").tag("outcome", "success").timer().count() > 0);
+        assertTrue(meterRegistry.get("jwt.sign").tag("outcome", "not_found").timer().count() > 0);
+        assertTrue(meterRegistry.get("ca.certificate.issue").tag("outcome", "success").timer().count() > 0);
+        assertTrue(meterRegistry.get("jwt.history.write").timer().count() > 0);
+        assertEquals(1.0, meterRegistry.get("ca.loaded").gauge().value());
+        assertTrue(meterRegistry.get("jwt.certificates.loaded").gauge().value() >= 1.0);
+
+        mockMvc.perform(delete("/certificates/metrics-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testVerifyJwt() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "verify-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/schemas/verify-schema")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"object\",\"required\":[\"license\"]}"))
+                .andExpect(status().isOk());
+
+        SigningCertificate certificate = jwtSigningService.getSnapshot().get("verify-cert");
+        String token = Jwts.builder()
+                .header().keyId(certificate.getKeyId()).and()
+                .claims(Map.of("sub", "verify"))
+                .signWith(certificate.getPrivateKey(), certificate.getKeyType().getJwsAlgorithm())
+                .compact();
+
+        mockMvc.perform(post("/jwt/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"" + token + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(true))
+                .andExpect(jsonPath("$.commonName").value("verify-cert"))
+                .andExpect(jsonPath("$.keyId").value(certificate.getKeyId()))
+                .andExpect(jsonPath("$.claims.sub").value("verify"));
+
+        // Tokens without a kid are matched through the commonName hint
+        String unkeyedToken = Jwts.builder()
+                .claims(Map.of("sub", "hint"))
+                .signWith(certificate.getPrivateKey(), certificate.getKeyType().getJwsAlgorithm())
+                .compact();
+        mockMvc.perform(post("/jwt/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"" + unkeyedToken + "\",\"commonName\":\"verify-cert\",\"schemaName\":\"verify-schema\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.schemaValidation.success").value(false));
+
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString("{\"sub\":\"forged\"}".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(post("/jwt/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"" + parts[0] + "." + forgedPayload + "." + parts[2] + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.error").isNotEmpty());
+
+        mockMvc.perform(post("/jwt/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"" + unkeyedToken + "\",\"commonName\":\"verify-missing\"}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/jwt/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"not-a-jwt\"}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/schemas/verify-schema"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/certificates/verify-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testJwks() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "jwks-cert")
+                        .param("validityDays", "30")
+                        .param("keyType", "EC-P256"))
+                .andExpect(status().isOk());
+        String kid = jwtSigningService.getSnapshot().get("jwks-cert").getKeyId();
+
+        String etag = mockMvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", containsString("max-age=")))
+                .andExpect(jsonPath("$.keys[?(@.kid == '" + kid + "')].kty").value("EC"))
+                .andExpect(jsonPath("$.keys[?(@.kid == '" + kid + "')].crv").value("P-256"))
+                .andExpect(jsonPath("$.keys[?(@.kid == '" + kid + "')].x5c[1]").exists())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/.well-known/jwks.json").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        String signedJwt = mockMvc.perform(post("/jwt/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commonName\":\"jwks-cert\",\"claims\":{\"sub\":\"abc\"}}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String header = new String(Base64.getUrlDecoder().decode(signedJwt.split("\\.")[0]), StandardCharsets.UTF_8);
+        assertTrue(header.contains("\"kid\":\"" + kid + "\""), header);
+
+        mockMvc.perform(delete("/certificates/jwks-cert"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/.well-known/jwks.json").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    void testCertificateDownloads() throws Exception {
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "download-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+
+        String etag = mockMvc.perform(get("/certificates/download-cert/pem"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("-----BEGIN CERTIFICATE-----")))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        mockMvc.perform(get("/certificates/download-cert/pem").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        String bundle = mockMvc.perform(get("/certificates/download-cert/bundle"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(2, bundle.split("-----BEGIN CERTIFICATE-----", -1).length - 1);
+
+        byte[] der = mockMvc.perform(get("/certificates/download-cert/der"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/pkix-cert"))
+                .andReturn().getResponse().getContentAsByteArray();
+        X509Certificate parsed = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(der));
+        assertEquals(jwtSigningService.getCertificateByCommonName("download-cert"), parsed);
+
+        String caEtag = mockMvc.perform(get("/certificates/ca-certificate/pem"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/certificates/ca-certificate/pem").header("If-None-Match", caEtag))
+                .andExpect(status().isNotModified());
+
+        // Reissuing under the same name replaces the cached bodies
+        mockMvc.perform(delete("/certificates/download-cert"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/certificates/download-cert/pem").header("If-None-Match", etag))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/certificates/generate")
+                        .param("commonName", "download-cert")
+                        .param("validityDays", "30"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/certificates/download-cert/pem").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+
+        mockMvc.perform(delete("/certificates/download-cert"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testBulkIssuance() throws Exception {
+        String requestBody = "[" +
+                "{\"commonName\":\"bulk-cert-1\",\"validityDays\":30}," +
+                "{\"commonName\":\"bulk-cert-2\",\"validityDays\":30,\"keyType\":\"EC-P256\"}," +
+                "{\"commonName\":\"bulk-cert-3\",\"keyType\":\"DSA-1024\"}," +
+                "{\"commonName\":\"BULK-CERT-1\"}," +
+                "{\"commonName\":\"bulk-cert-4\",\"validityDays\":30,\"keyType\":\"Ed25519\"}" +
+                "]";
+        mockMvc.perform(post("/certificates/generate/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[1].status").value(200))
+                .andExpect(jsonPath("$[1].keyType").value("EC-P256"))
+                .andExpect(jsonPath("$[2].status").value(400))
+                .andExpect(jsonPath("$[3].status").value(400))
+                .andExpect(jsonPath("$[4].status").value(200))
+                .andExpect(jsonPath("$[4].keyId").isNotEmpty());
+
+        for (String commonName : new String[]{"bulk-cert-1", "bulk-cert-2", "bulk-cert-4"}) {
+            mockMvc.perform(post("/jwt/sign")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"commonName\":\"" + commonName + "\",\"claims\":{\"sub\":\"bulk\"}}"))
+                    .andExpect(status().isOk());
+            mockMvc.perform(delete("/certificates/" + commonName))
+                    .andExpect(status().isOk());
+        }
+    }
+}
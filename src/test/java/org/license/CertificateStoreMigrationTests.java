@@ -0,0 +1,109 @@
+package org.license;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateStoreMigrationTests {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void registerProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void migratesJksEntriesToPerEntryFiles() throws Exception {
+        CertificateStore jks = new JksCertificateStore(tempDir.resolve("generated.jks").toString(), "changeit");
+        jks.load();
+        KeyPair keyPair = KeyType.EC_P256.generateKeyPair();
+        jks.put("migrated-cert", keyPair.getPrivate(), new Certificate[]{selfSigned("migrated-cert", keyPair)});
+        jks.put("other cert/1", keyPair.getPrivate(), new Certificate[]{selfSigned("other", keyPair)});
+
+        CertificateStore files = new FileCertificateStore(tempDir.resolve("generated").toString(), "changeit");
+        files.load();
+        assertEquals(2, CertificateStoreMigration.migrate(jks, files));
+
+        // A fresh instance sees the entries persisted on disk
+        CertificateStore reopened = new FileCertificateStore(tempDir.resolve("generated").toString(), "changeit");
+        reopened.load();
+        assertTrue(reopened.containsAlias("migrated-cert"));
+        assertTrue(reopened.containsAlias("other cert/1"));
+        assertArrayEquals(keyPair.getPrivate().getEncoded(), reopened.getKey("migrated-cert").getEncoded());
+
+        reopened.delete("migrated-cert");
+        reopened.load();
+        assertFalse(reopened.containsAlias("migrated-cert"));
+        assertEquals(1, reopened.aliases().size());
+    }
+
+    @Test
+    void jksPutAllPersistsEveryEntry() throws Exception {
+        CertificateStore jks = new JksCertificateStore(tempDir.resolve("bulk.jks").toString(), "changeit");
+        jks.load();
+        List<SigningCertificate> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            KeyPair keyPair = KeyType.EC_P256.generateKeyPair();
+            entries.add(new SigningCertificate("bulk-" + i, keyPair.getPrivate(), KeyType.EC_P256,
+                    new X509Certificate[]{selfSigned("bulk-" + i, keyPair)}));
+        }
+        jks.putAll(entries);
+
+        CertificateStore reopened = new JksCertificateStore(tempDir.resolve("bulk.jks").toString(), "changeit");
+        reopened.load();
+        assertEquals(3, reopened.aliases().size());
+        assertArrayEquals(entries.get(2).getPrivateKey().getEncoded(), reopened.getKey("bulk-2").getEncoded());
+    }
+
+    @Test
+    void jksPutAndDeleteRestoreTheKeystoreWhenPersistFails() throws Exception {
+        Path directory = tempDir.resolve("store");
+        Files.createDirectories(directory);
+        CertificateStore jks = new JksCertificateStore(directory.resolve("generated.jks").toString(), "changeit");
+        jks.load();
+        KeyPair keyPair = KeyType.EC_P256.generateKeyPair();
+        jks.put("kept-cert", keyPair.getPrivate(), new Certificate[]{selfSigned("kept-cert", keyPair)});
+
+        // A plain file where the keystore directory was makes every later write fail
+        Files.delete(directory.resolve("generated.jks"));
+        Files.delete(directory);
+        Files.createFile(directory);
+
+        assertThrows(IOException.class, () -> jks.put("lost-cert", keyPair.getPrivate(),
+                new Certificate[]{selfSigned("lost-cert", keyPair)}));
+        assertFalse(jks.containsAlias("lost-cert"));
+        assertThrows(IOException.class, () -> jks.delete("kept-cert"));
+        assertTrue(jks.containsAlias("kept-cert"));
+        assertArrayEquals(keyPair.getPrivate().getEncoded(), jks.getKey("kept-cert").getEncoded());
+    }
+
+    private static X509Certificate selfSigned(String commonName, KeyPair keyPair) throws Exception {
+        X500Name name = new X500Name("CN=" + commonName);
+        Date notBefore = new Date();
+        Date notAfter = new Date(notBefore.getTime() + 86_400_000L);
+        return new JcaX509CertificateConverter().setProvider("BC").getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore, notAfter, name, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withECDSA").setProvider("BC").build(keyPair.getPrivate())));
+    }
+}
@@ -0,0 +1,140 @@
+package org.license;
+
+import io.jsonwebtoken.Claims;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactJwsWriterTests {
+
+    @BeforeAll
+    static void registerProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void deterministicSignaturesMatchJjwtByteForByte() throws Exception {
+        for (KeyType keyType : List.of(KeyType.RSA_2048, KeyType.ED25519)) {
+            SigningCertificate signingKey = signingKey(keyType);
+            CompactJwsWriter writer = signingKey.getJwsWriter();
+            for (Map<String, Object> claims : claimSets()) {
+                assertEquals(CompactJwsWriter.jjwt(signingKey, claims), writer.sign(claims), keyType + " " + claims);
+            }
+        }
+    }
+
+    @Test
+    void ecdsaTokensMatchJjwtApartFromTheRandomizedSignature() throws Exception {
+        for (KeyType keyType : List.of(KeyType.EC_P256, KeyType.EC_P384)) {
+            SigningCertificate signingKey = signingKey(keyType);
+            for (Map<String, Object> claims : claimSets()) {
+                String expected = CompactJwsWriter.jjwt(signingKey, claims);
+                String actual = signingKey.getJwsWriter().sign(claims);
+                assertEquals(expected.substring(0, expected.lastIndexOf('.')), actual.substring(0, actual.lastIndexOf('.')));
+                assertEquals(expected.length(), actual.length());
+
+                Claims parsed = signingKey.getVerifier().parseSignedClaims(actual).getPayload();
+                assertEquals(claims.get("sub"), parsed.getSubject());
+            }
+        }
+    }
+
+    @Test
+    void normalizedClaimsFallBackToJjwt() {
+        assertTrue(CompactJwsWriter.isPlain(Map.of("sub", "license", "seats", 5)));
+        assertFalse(CompactJwsWriter.isPlain(Map.of()));
+        assertTrue(CompactJwsWriter.isPlain(Map.of("sub", "license", "exp", 1_900_000_000L, "iat", 1_700_000_000)));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("exp", "1900000000")));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("exp", 1.9e9)));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("exp", new Date())));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("aud", "apps")));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("sub", 42)));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("name", " padded ")));
+        assertFalse(CompactJwsWriter.isPlain(Map.of(" name", "license")));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("name", "")));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("apps", List.of())));
+        assertFalse(CompactJwsWriter.isPlain(Map.of("raw", new byte[]{1})));
+        Map<String, Object> withNull = new LinkedHashMap<>();
+        withNull.put("sub", "license");
+        withNull.put("name", null);
+        assertFalse(CompactJwsWriter.isPlain(withNull));
+    }
+
+    @Test
+    void encodesLikeTheJdkUrlEncoder() {
+        Base64.Encoder jdk = Base64.getUrlEncoder().withoutPadding();
+        for (int length = 0; length < 64; length++) {
+            byte[] source = new byte[length];
+            for (int i = 0; i < length; i++) {
+                source[i] = (byte) (i * 37 + length);
+            }
+            byte[] target = new byte[CompactJwsWriter.encodedLength(length) + 2];
+            CompactJwsWriter.encode(source, target, 1);
+            assertEquals(jdk.encodeToString(source),
+                    new String(target, 1, target.length - 2, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static List<Map<String, Object>> claimSets() {
+        List<Map<String, Object>> sets = new ArrayList<>();
+        sets.add(Map.of("sub", "license"));
+
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("sub", "license");
+        nested.put("name", "Jey company – ÄÖÜ 日本 🚀");
+        nested.put("quote", "line\nbreak \"quoted\" \\ / \u0001");
+        nested.put("seats", 250);
+        nested.put("ratio", 0.125);
+        nested.put("big", 9_007_199_254_740_993L);
+        nested.put("trial", false);
+        nested.put("apps", List.of("app-1", "app-2"));
+        nested.put("feature", Map.of("enabled", true, "limits", Map.of("cpu", 4)));
+        sets.add(nested);
+
+        // A typical license token: registered time claims as epoch seconds, which stay on the fast path
+        Map<String, Object> license = new LinkedHashMap<>();
+        license.put("iss", "license-server");
+        license.put("sub", "license");
+        license.put("iat", 1_700_000_000L);
+        license.put("nbf", 1_700_000_000);
+        license.put("exp", 1_900_000_000L);
+        license.put("jti", "a3c1f2");
+        license.put("apps", List.of("app-1"));
+        sets.add(license);
+
+        // Handled by jjwt; the writer must still produce the same token
+        sets.add(Map.of("sub", "license", "exp", 1_900_000_000L, "aud", "apps"));
+        sets.add(Map.of("sub", "license", "name", "  padded  "));
+        return sets;
+    }
+
+    private static SigningCertificate signingKey(KeyType keyType) throws Exception {
+        KeyPair keyPair = keyType.generateKeyPair();
+        X500Name name = new X500Name("CN=jws-" + keyType.getLabel());
+        Date notBefore = new Date();
+        Date notAfter = new Date(notBefore.getTime() + 86_400_000L);
+        X509Certificate certificate = new JcaX509CertificateConverter().setProvider("BC").getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore, notAfter, name, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder(keyType.getCertificateSignatureAlgorithm())
+                                .setProvider("BC").build(keyPair.getPrivate())));
+        return new SigningCertificate("jws-" + keyType.name(), keyPair.getPrivate(), keyType, new X509Certificate[]{certificate});
+    }
+}
@@ -0,0 +1,148 @@
+package org.license;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Run with ./gradlew benchmark; mixed history reads and writes against the old shared pool and the WAL writer/reader split
+@Tag("benchmark")
+class HistoryDatabaseLoadTests {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 8;
+    private static final int WRITE_BATCH = 50;
+    private static final int SEED_ROWS = 20_000;
+    private static final long DURATION_MS = 10_000;
+
+    private static final String[] CREATE_TABLES = {
+            "CREATE TABLE IF NOT EXISTS jwt_sign_history (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "timestamp TIMESTAMP, success BOOLEAN, common_name VARCHAR(255), failure_reason VARCHAR(1000), " +
+                    "original_jwt VARCHAR(2000), signed_jwt_result VARCHAR(2000), header_hash VARCHAR(43), " +
+                    "payload_hash VARCHAR(43), original_hash VARCHAR(43), signature BLOB)",
+            "CREATE TABLE IF NOT EXISTS jwt_payload (hash VARCHAR(43) PRIMARY KEY, dictionary_id INTEGER, raw_length INTEGER, data BLOB)",
+            "CREATE TABLE IF NOT EXISTS jwt_payload_dictionary (id INTEGER PRIMARY KEY AUTOINCREMENT, content BLOB, " +
+                    "sample_size INTEGER, created_at TIMESTAMP)"
+    };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compareSharedPoolWithWalReaderWriterSplit() throws Exception {
+        System.out.printf("%-16s %14s %12s %10s%n", "mode", "rows written/s", "reads/s", "errors");
+
+        String sharedUrl = "jdbc:sqlite:" + tempDir.resolve("shared.db");
+        SQLiteDataSource sqlite = new SQLiteDataSource(new SQLiteConfig());
+        sqlite.setUrl(sharedUrl);
+        HikariConfig sharedConfig = new HikariConfig();
+        sharedConfig.setDataSource(sqlite);
+        sharedConfig.setMaximumPoolSize(10);
+        try (HikariDataSource shared = new HikariDataSource(sharedConfig)) {
+            run("shared pool", shared);
+        }
+
+        String walUrl = "jdbc:sqlite:" + tempDir.resolve("wal.db");
+        try (HikariDataSource writer = HistoryDataSourceConfig.writerPool(walUrl, SQLiteConfig.SynchronousMode.NORMAL, 5000);
+             HikariDataSource reader = HistoryDataSourceConfig.readerPool(walUrl, 5000, 4)) {
+            run("wal split", HistoryDataSourceConfig.routing(writer, reader));
+        }
+    }
+
+    private void run(String label, DataSource dataSource) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String createTable : CREATE_TABLES) {
+            jdbcTemplate.execute(createTable);
+        }
+        JwtSignHistoryRepositoryImpl repository = new JwtSignHistoryRepositoryImpl(jdbcTemplate, new JwtPayloadCodec(jdbcTemplate, 6, 1000));
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate writeTx = new TransactionTemplate(transactionManager);
+        TransactionTemplate readTx = new TransactionTemplate(transactionManager);
+        readTx.setReadOnly(true);
+
+        for (int seeded = 0; seeded < SEED_ROWS; seeded += 1000) {
+            writeTx.executeWithoutResult(status -> repository.insertBatch(rows(1000)));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong rowsWritten = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                workers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        try {
+                            writeTx.executeWithoutResult(status -> repository.insertBatch(rows(WRITE_BATCH)));
+                            rowsWritten.addAndGet(WRITE_BATCH);
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < READERS; i++) {
+                workers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        JwtSignHistoryQuery query = new JwtSignHistoryQuery();
+                        query.setAfter(ThreadLocalRandom.current().nextLong(SEED_ROWS));
+                        query.setLimit(JwtSignHistoryQuery.MAX_LIMIT);
+                        query.setIncludeJwt(true);
+                        try {
+                            readTx.execute(status -> repository.findPage(query));
+                            reads.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            Thread.sleep(DURATION_MS);
+            running.set(false);
+            for (Future<?> worker : workers) {
+                worker.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = DURATION_MS / 1000.0;
+        System.out.printf("%-16s %14.1f %12.1f %10d%n", label, rowsWritten.get() / seconds, reads.get() / seconds, errors.get());
+    }
+
+    private static List<JwtSignHistory> rows(int count) {
+        List<JwtSignHistory> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JwtSignHistory history = new JwtSignHistory();
+            history.setTimestamp(LocalDateTime.now());
+            history.setSuccess(true);
+            history.setCommonName("load-cert");
+            history.setOriginalJwt("{\"sub\":\"load\"}");
+            history.setSignedJwtResult("eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJsb2FkIn0." + "x".repeat(342));
+            rows.add(history);
+        }
+        return rows;
+    }
+}
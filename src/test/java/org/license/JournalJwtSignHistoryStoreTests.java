@@ -0,0 +1,189 @@
+package org.license;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalJwtSignHistoryStoreTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pagesAndFiltersAcrossSegments() throws Exception {
+        try (JournalJwtSignHistoryStore store = open()) {
+            store.insertBatch(rows(1, 2000));
+            assertTrue(store.segmentCount() > 1);
+            assertEquals(2000, store.count());
+            assertEquals(1L, store.findMinId());
+            assertEquals(2000L, store.findMaxId());
+
+            JwtSignHistoryQuery query = new JwtSignHistoryQuery();
+            query.setAfter(1500L);
+            query.setLimit(10);
+            List<JwtSignHistory> page = store.findPage(query);
+            assertEquals(11, page.size());
+            assertEquals(1501L, page.get(0).getId());
+            assertNull(page.get(0).getSignedJwtResult());
+
+            query = new JwtSignHistoryQuery();
+            query.setFrom(START.plusSeconds(1000));
+            query.setTo(START.plusSeconds(1010));
+            query.setSuccess(true);
+            query.setCommonName("cert-1");
+            query.setIncludeJwt(true);
+            page = store.findPage(query);
+            // Rows 1001..1010 fall in the window; odd ids succeed and cert-1 holds ids with id % 4 == 1
+            assertEquals(List.of(1001L, 1005L, 1009L), page.stream().map(JwtSignHistory::getId).toList());
+            assertEquals(START.plusSeconds(1000), page.get(0).getTimestamp());
+            assertTrue(page.get(0).getSignedJwtResult().startsWith("header.payload-1001."));
+
+            assertEquals(1001L, store.findFirstIdSince(START.plusSeconds(1000)));
+            assertEquals(2000L, store.findIdFromNewest(0));
+            assertEquals(1L, store.findIdFromNewest(1999));
+            assertNull(store.findIdFromNewest(2000));
+
+            List<Long> streamed = new ArrayList<>();
+            JwtSignHistoryQuery all = new JwtSignHistoryQuery();
+            assertEquals(2000, store.streamRows(all, 5000, 100, history -> streamed.add(history.getId())));
+            assertEquals(2000, streamed.size());
+            assertEquals(1L, streamed.get(0));
+            assertEquals(2000L, streamed.get(1999));
+        }
+    }
+
+    @Test
+    void reopenRebuildsIndexAndKeepsDeletes() throws Exception {
+        try (JournalJwtSignHistoryStore store = open()) {
+            store.insertBatch(rows(1, 1200));
+            assertTrue(store.deleteById(5));
+            assertFalse(store.deleteById(5));
+            assertFalse(store.deleteById(99_999));
+        }
+
+        try (JournalJwtSignHistoryStore store = open()) {
+            assertEquals(1199, store.count());
+            assertEquals(1001L, store.findFirstIdSince(START.plusSeconds(1000)));
+            assertFalse(store.deleteById(5));
+
+            JwtSignHistoryQuery query = new JwtSignHistoryQuery();
+            query.setAfter(3L);
+            query.setLimit(2);
+            assertEquals(List.of(4L, 6L, 7L), store.findPage(query).stream().map(JwtSignHistory::getId).toList());
+
+            // Ids continue after the newest recovered row
+            JwtSignHistory next = store.save(row(1201));
+            assertEquals(1201L, next.getId());
+        }
+    }
+
+    @Test
+    void retentionDropsWholeSegments() throws Exception {
+        try (JournalJwtSignHistoryStore store = open()) {
+            store.insertBatch(rows(1, 2000));
+            int segments = store.segmentCount();
+
+            // Nothing below the first segment's last row can be dropped on its own
+            assertEquals(0, store.deleteWithIdBelow(2));
+
+            int dropped = store.deleteWithIdBelow(1500);
+            assertTrue(dropped > 0 && dropped < 1500);
+            assertEquals(2000 - dropped, store.count());
+            assertEquals(dropped + 1L, store.findMinId());
+            assertTrue(store.segmentCount() < segments);
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(store.segmentCount(), files.count());
+            }
+
+            // Everything, including the active segment, once the cutoff passes the newest row
+            assertEquals(2000 - dropped, store.deleteWithIdBelow(2001));
+            assertEquals(0, store.count());
+            assertNull(store.findMinId());
+            assertEquals(2001L, store.save(row(2001)).getId());
+        }
+    }
+
+    @Test
+    void tornTailIsDiscardedOnOpen() throws Exception {
+        try (JournalJwtSignHistoryStore store = open()) {
+            store.insertBatch(rows(1, 10));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+
+        // Simulate a crash while appending the next record: its length reached the file but part of its body did not
+        try (JournalJwtSignHistoryStore store = open()) {
+            store.insertBatch(rows(11, 11));
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer tail = ByteBuffer.allocate(4).putInt(0, 0x5A5A5A5A);
+            long lastBodyOffset = findLastRecordBody(channel);
+            channel.write(tail, lastBodyOffset + 20);
+        }
+
+        try (JournalJwtSignHistoryStore store = open()) {
+            assertEquals(10, store.count());
+            assertEquals(10L, store.findMaxId());
+            assertEquals(11L, store.save(row(11)).getId());
+        }
+        try (JournalJwtSignHistoryStore store = open()) {
+            assertEquals(11, store.count());
+        }
+    }
+
+    private JournalJwtSignHistoryStore open() throws Exception {
+        return JournalJwtSignHistoryStore.open(tempDir, JournalJwtSignHistoryStore.MIN_SEGMENT_SIZE, 16);
+    }
+
+    // Walks the length prefixes to the body of the last record
+    private static long findLastRecordBody(FileChannel channel) throws Exception {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        long position = 8;
+        long lastBody = -1;
+        while (true) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length == 0) {
+                return lastBody;
+            }
+            lastBody = position + 8;
+            position = lastBody + length;
+        }
+    }
+
+    private static List<JwtSignHistory> rows(int firstId, int lastId) {
+        List<JwtSignHistory> rows = new ArrayList<>();
+        for (int id = firstId; id <= lastId; id++) {
+            rows.add(row(id));
+        }
+        return rows;
+    }
+
+    // Row n is stamped n - 1 seconds after START, so ids and timestamps line up
+    private static JwtSignHistory row(int id) {
+        JwtSignHistory history = new JwtSignHistory();
+        history.setTimestamp(START.plusSeconds(id - 1));
+        history.setSuccess(id % 2 == 1);
+        history.setCommonName("cert-" + id % 4);
+        history.setFailureReason(id % 2 == 1 ? null : "Certificate not found");
+        history.setOriginalJwt("{\"sub\":\"user-" + id + "\"}");
+        history.setSignedJwtResult("header.payload-" + id + "." + "s".repeat(200));
+        return history;
+    }
+}
@@ -0,0 +1,52 @@
+package org.license;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtSignHistoryWriterTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rejectsRowsAfterShutdown() throws Exception {
+        try (JournalJwtSignHistoryStore store = JournalJwtSignHistoryStore.open(tempDir, JournalJwtSignHistoryStore.MIN_SEGMENT_SIZE, 16)) {
+            JwtSignHistoryWriter writer = new JwtSignHistoryWriter(store, new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(writer, "queueCapacity", 1);
+            ReflectionTestUtils.setField(writer, "batchSize", 10);
+            ReflectionTestUtils.setField(writer, "flushIntervalMs", 20L);
+            ReflectionTestUtils.setField(writer, "backpressurePolicy", JwtSignHistoryWriter.BackpressurePolicy.BLOCK);
+            ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 5000L);
+            writer.init();
+
+            assertTrue(writer.canAccept(5));
+            writer.enqueue(row());
+            assertTrue(writer.awaitDrained(5000));
+            writer.shutdown();
+            assertFalse(writer.canAccept(1));
+
+            assertThrows(JwtSignHistoryWriter.QueueFullException.class, () -> writer.enqueue(row()));
+            JwtSignHistoryWriter.WriterStats stats = writer.getStats();
+            assertEquals(1, stats.getAccepted());
+            assertEquals(1, stats.getWritten());
+            assertEquals(1, stats.getRejected());
+            assertEquals(1, store.count());
+        }
+    }
+
+    private static JwtSignHistory row() {
+        JwtSignHistory history = new JwtSignHistory();
+        history.setTimestamp(LocalDateTime.now());
+        history.setCommonName("writer-cert");
+        history.setSuccess(true);
+        history.setSignedJwtResult("header.payload.signature");
+        return history;
+    }
+}
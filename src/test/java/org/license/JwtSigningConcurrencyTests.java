@@ -0,0 +1,137 @@
+package org.license;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class JwtSigningConcurrencyTests {
+
+    private static final int SIGNERS = 8;
+    private static final int CHURN_CERTS = 4;
+    private static final int CHURN_ROUNDS = 10;
+
+    private static final int ISSUERS = 16;
+    private static final int CERTS_PER_ISSUER = 250;
+
+    @Autowired
+    private JwtSigningService jwtSigningService;
+
+    @Autowired
+    private CaService caService;
+
+    @Test
+    void signsWhileCertificatesAreAddedAndRemoved() throws Exception {
+        jwtSigningService.generateAndSaveCertificate("stress-stable", 30, KeyType.EC_P256);
+
+        ExecutorService executor = Executors.newFixedThreadPool(SIGNERS + 1);
+        AtomicBoolean churning = new AtomicBoolean(true);
+        AtomicInteger signed = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(SIGNERS);
+        Map<String, Object> claims = Map.of("sub", "stress");
+
+        try {
+            List<Future<?>> signers = new ArrayList<>();
+            for (int i = 0; i < SIGNERS; i++) {
+                int signer = i;
+                signers.add(executor.submit(() -> {
+                    started.countDown();
+                    int n = 0;
+                    while (churning.get()) {
+                        // The stable certificate must always sign; churned ones may legitimately be missing
+                        String commonName = (n++ % 2 == 0) ? "stress-stable" : "stress-churn-" + (signer % CHURN_CERTS);
+                        try {
+                            assertNotNull(jwtSigningService.signJwt(commonName, claims));
+                            signed.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            if (commonName.equals("stress-stable")) {
+                                unexpected.add(e);
+                            }
+                        } catch (Throwable t) {
+                            unexpected.add(t);
+                        }
+                    }
+                }));
+            }
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int round = 0; round < CHURN_ROUNDS; round++) {
+                for (int c = 0; c < CHURN_CERTS; c++) {
+                    jwtSigningService.generateAndSaveCertificate("stress-churn-" + c, 30, KeyType.EC_P256);
+                }
+                for (int c = 0; c < CHURN_CERTS; c++) {
+                    jwtSigningService.deleteCertificate("stress-churn-" + c);
+                }
+            }
+            churning.set(false);
+            for (Future<?> f : signers) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            churning.set(false);
+            executor.shutdownNow();
+            jwtSigningService.deleteCertificate("stress-stable");
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        assertTrue(signed.get() > 0);
+        assertNull(jwtSigningService.getSnapshot().get("stress-churn-0"));
+    }
+
+    @Test
+    void issuesUniqueSerialsConcurrently() throws Exception {
+        PublicKey publicKey = KeyType.EC_P256.generateKeyPair().getPublic();
+        Date notBefore = new Date();
+        Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(1));
+        Set<BigInteger> serials = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ISSUERS);
+        try {
+            List<Future<?>> issuers = new ArrayList<>();
+            for (int i = 0; i < ISSUERS; i++) {
+                int issuer = i;
+                issuers.add(executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < CERTS_PER_ISSUER; n++) {
+                        X509Certificate certificate = caService.issueCertificate("serial-" + issuer + "-" + n, notBefore, notAfter, publicKey);
+                        BigInteger serial = certificate.getSerialNumber();
+                        assertEquals(1, serial.signum());
+                        assertTrue(serial.bitLength() <= 128, () -> "serial too long: " + serial.bitLength());
+                        serials.add(serial);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> issuer : issuers) {
+                issuer.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(ISSUERS * CERTS_PER_ISSUER, serials.size());
+    }
+}
@@ -0,0 +1,34 @@
+package org.license;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyTypeTests {
+
+    @BeforeAll
+    static void registerProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void fromKeyMatchesTheExactKeySize() throws Exception {
+        for (KeyType keyType : KeyType.values()) {
+            assertEquals(keyType, KeyType.fromKey(keyType.generateKeyPair().getPrivate()));
+        }
+
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(1024);
+        assertThrows(IllegalArgumentException.class, () -> KeyType.fromKey(rsa.generateKeyPair().getPrivate()));
+
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp521r1"));
+        assertThrows(IllegalArgumentException.class, () -> KeyType.fromKey(ec.generateKeyPair().getPrivate()));
+    }
+}
@@ -0,0 +1,58 @@
+package org.license;
+
+import io.jsonwebtoken.Jwts;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Map;
+
+// Run with ./gradlew benchmark; excluded from the regular test task
+@Tag("benchmark")
+class SigningAlgorithmBenchmarkTests {
+
+    private static final int KEYGEN_ITERATIONS = 20;
+    private static final int WARMUP_SIGNATURES = 500;
+    private static final int MEASURED_SIGNATURES = 2000;
+
+    @BeforeAll
+    static void registerProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void compareSigningAlgorithms() throws Exception {
+        Map<String, Object> claims = Map.of("sub", "license", "name", "Jey company", "apps", new String[]{"app1", "app2"});
+
+        System.out.printf("%-10s %8s %16s %16s%n", "keyType", "alg", "keygen ms/op", "sign ops/s");
+        for (KeyType keyType : KeyType.values()) {
+            long keygenStart = System.nanoTime();
+            KeyPair keyPair = null;
+            for (int i = 0; i < KEYGEN_ITERATIONS; i++) {
+                keyPair = keyType.generateKeyPair();
+            }
+            double keygenMillis = (System.nanoTime() - keygenStart) / 1_000_000.0 / KEYGEN_ITERATIONS;
+
+            for (int i = 0; i < WARMUP_SIGNATURES; i++) {
+                sign(keyType, keyPair, claims);
+            }
+            long signStart = System.nanoTime();
+            for (int i = 0; i < MEASURED_SIGNATURES; i++) {
+                sign(keyType, keyPair, claims);
+            }
+            double signOpsPerSecond = MEASURED_SIGNATURES / ((System.nanoTime() - signStart) / 1_000_000_000.0);
+
+            System.out.printf("%-10s %8s %16.3f %16.1f%n", keyType.getLabel(), keyType.getJwsAlgorithm().getId(), keygenMillis, signOpsPerSecond);
+        }
+    }
+
+    private static String sign(KeyType keyType, KeyPair keyPair, Map<String, Object> claims) {
+        return Jwts.builder()
+                .claims(claims)
+                .signWith(keyPair.getPrivate(), keyType.getJwsAlgorithm())
+                .compact();
+    }
+}
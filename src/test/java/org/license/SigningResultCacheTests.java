@@ -0,0 +1,188 @@
+package org.license;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigningResultCacheTests {
+
+    private static SigningCertificate signingKey;
+
+    @BeforeAll
+    static void createKey() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        signingKey = signingKey("cache-cert");
+    }
+
+    @Test
+    void concurrentDuplicatesShareOneSignature() throws Exception {
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        AtomicInteger signatures = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<SigningResultCache.Result>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    SigningResultCache.Result result = cache.sign(signingKey, "retry-1", Map.of("sub", "a"), () -> {
+                        signatures.incrementAndGet();
+                        release.await();
+                        return "token";
+                    });
+                    result.commit();
+                    return result;
+                }));
+            }
+            // Let every caller reach the cache before the one signature finishes
+            Thread.sleep(200);
+            release.countDown();
+
+            int replayed = 0;
+            for (Future<SigningResultCache.Result> result : results) {
+                assertEquals("token", result.get(5, TimeUnit.SECONDS).getToken());
+                replayed += result.get().isReplayed() ? 1 : 0;
+            }
+            assertEquals(1, signatures.get());
+            assertEquals(callers - 1, replayed);
+            assertEquals(callers - 1, cache.getStats().getReplays());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void claimsHashIgnoresKeyOrder() throws Exception {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("sub", "a");
+        first.put("limits", Map.of("cpu", 4, "seats", 10));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("limits", new LinkedHashMap<>(Map.of("seats", 10, "cpu", 4)));
+        second.put("sub", "a");
+        assertEquals(SigningResultCache.claimsHash(first), SigningResultCache.claimsHash(second));
+        assertNotEquals(SigningResultCache.claimsHash(first), SigningResultCache.claimsHash(Map.of("sub", "b")));
+
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        assertFalse(sign(cache, signingKey, null, first, "token").isReplayed());
+        assertTrue(sign(cache, signingKey, null, second, "other").isReplayed());
+    }
+
+    @Test
+    void reusedKeyWithDifferentClaimsIsRejected() throws Exception {
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        sign(cache, signingKey, "retry-1", Map.of("sub", "a"), "token");
+        assertThrows(IllegalStateException.class,
+                () -> sign(cache, signingKey, "retry-1", Map.of("sub", "b"), "other"));
+    }
+
+    @Test
+    void entriesExpireAndEvictLeastRecentlyUsed() throws Exception {
+        AtomicLong now = new AtomicLong();
+        SigningResultCache cache = new SigningResultCache(2, Duration.ofSeconds(60), now::get);
+        sign(cache, signingKey, "a", Map.of("sub", "a"), "token-a");
+        sign(cache, signingKey, "b", Map.of("sub", "b"), "token-b");
+        assertTrue(sign(cache, signingKey, "a", Map.of("sub", "a"), "new-a").isReplayed());
+
+        // "b" is now the least recently used entry
+        sign(cache, signingKey, "c", Map.of("sub", "c"), "token-c");
+        assertEquals(2, cache.getStats().getSize());
+        assertFalse(sign(cache, signingKey, "b", Map.of("sub", "b"), "new-b").isReplayed());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        SigningResultCache.Result expired = sign(cache, signingKey, "b", Map.of("sub", "b"), "newer-b");
+        assertFalse(expired.isReplayed());
+        assertEquals("newer-b", expired.getToken());
+    }
+
+    @Test
+    void reissuedOrInvalidatedCertificatesDoNotReplay() throws Exception {
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        sign(cache, signingKey, "retry-1", Map.of("sub", "a"), "token");
+
+        SigningCertificate reissued = signingKey("cache-cert");
+        SigningResultCache.Result result = sign(cache, reissued, "retry-1", Map.of("sub", "a"), "reissued-token");
+        assertFalse(result.isReplayed());
+        assertEquals("reissued-token", result.getToken());
+
+        cache.invalidate("Cache-Cert");
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    void failuresAreNotCached() throws Exception {
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        assertThrows(IllegalStateException.class, () -> cache.sign(signingKey, "retry-1", Map.of("sub", "a"), () -> {
+            throw new IllegalStateException("boom");
+        }));
+        SigningResultCache.Result result = sign(cache, signingKey, "retry-1", Map.of("sub", "a"), "token");
+        assertFalse(result.isReplayed());
+        assertEquals("token", result.getToken());
+    }
+
+    @Test
+    void discardedTokensAreSignedAgain() throws Exception {
+        SigningResultCache cache = new SigningResultCache(100, Duration.ofMinutes(10));
+        SigningResultCache.Result pending = cache.sign(signingKey, "retry-1", Map.of("sub", "a"), () -> "unrecorded");
+
+        // A duplicate arriving while the first token is pending waits, then signs itself once that token is discarded
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SigningResultCache.Result> duplicate = executor.submit(
+                    () -> sign(cache, signingKey, "retry-1", Map.of("sub", "a"), "recorded"));
+            Thread.sleep(100);
+            assertFalse(duplicate.isDone());
+            pending.discard();
+
+            SigningResultCache.Result result = duplicate.get(5, TimeUnit.SECONDS);
+            assertFalse(result.isReplayed());
+            assertEquals("recorded", result.getToken());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("recorded", sign(cache, signingKey, "retry-1", Map.of("sub", "a"), "other").getToken());
+    }
+
+    private static SigningResultCache.Result sign(SigningResultCache cache, SigningCertificate key, String idempotencyKey,
+                                                  Map<String, Object> claims, String token) throws Exception {
+        SigningResultCache.Result result = cache.sign(key, idempotencyKey, claims, () -> token);
+        result.commit();
+        return result;
+    }
+
+    private static SigningCertificate signingKey(String commonName) throws Exception {
+        KeyPair keyPair = KeyType.EC_P256.generateKeyPair();
+        X500Name name = new X500Name("CN=" + commonName);
+        Date notBefore = new Date();
+        Date notAfter = new Date(notBefore.getTime() + 86_400_000L);
+        X509Certificate certificate = new JcaX509CertificateConverter().setProvider("BC").getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore, notAfter, name, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withECDSA").setProvider("BC").build(keyPair.getPrivate())));
+        return new SigningCertificate(CertificateSnapshot.normalize(commonName), keyPair.getPrivate(), KeyType.EC_P256,
+                new X509Certificate[]{certificate});
+    }
+}
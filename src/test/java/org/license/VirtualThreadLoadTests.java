@@ -0,0 +1,100 @@
+package org.license;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with ./gradlew benchmark; starts the app once on platform threads and once with the 'virtual' profile
+@Tag("benchmark")
+class VirtualThreadLoadTests {
+
+    private static final int CONCURRENCY = 400;
+    private static final int WARMUP_REQUESTS = 5000;
+    private static final int MEASURED_REQUESTS = 40000;
+    private static final String COMMON_NAME = "load-test-cert";
+
+    @Test
+    void compareRequestThreadModels() throws Exception {
+        System.out.printf("%-10s %12s %10s %10s %10s%n", "threads", "req/s", "p50 ms", "p99 ms", "max ms");
+        run("platform");
+        run("virtual");
+    }
+
+    private void run(String label) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class).properties("server.port=0");
+        if (label.equals("virtual")) {
+            builder.profiles("virtual");
+        }
+        try (ConfigurableApplicationContext context = builder.run();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient httpClient = HttpClient.newBuilder().executor(clients).build();
+
+            HttpResponse<String> generated = httpClient.send(HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/certificates/generate?commonName=" + COMMON_NAME + "&validityDays=1"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, generated.statusCode());
+
+            HttpRequest signRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/jwt/sign"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"commonName\":\"" + COMMON_NAME + "\",\"claims\":{\"sub\":\"load\",\"apps\":[\"app1\",\"app2\"]}}"))
+                    .build();
+
+            drive(httpClient, clients, signRequest, WARMUP_REQUESTS);
+            long start = System.nanoTime();
+            long[] latencies = drive(httpClient, clients, signRequest, MEASURED_REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-10s %12.1f %10.2f %10.2f %10.2f%n", label, MEASURED_REQUESTS / seconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1_000_000.0);
+
+            httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/certificates/" + COMMON_NAME)).DELETE().build(),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    // CONCURRENCY client threads share one request counter; returns per-request latency in nanoseconds
+    private static long[] drive(HttpClient httpClient, ExecutorService clients, HttpRequest request, int total) throws Exception {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>(CONCURRENCY);
+        for (int c = 0; c < CONCURRENCY; c++) {
+            workers.add(clients.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < total) {
+                    long start = System.nanoTime();
+                    HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies[i] = System.nanoTime() - start;
+                    assertEquals(200, response.statusCode());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}